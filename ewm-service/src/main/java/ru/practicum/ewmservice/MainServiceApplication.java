@@ -2,8 +2,13 @@ package ru.practicum.ewmservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import ru.practicum.ewmservice.storage.QuerydslSliceJpaRepository;
 
 @SpringBootApplication
+@EnableScheduling
+@EnableJpaRepositories(repositoryBaseClass = QuerydslSliceJpaRepository.class)
 public class MainServiceApplication {
 
 	public static void main(String[] args) {
@@ -1,47 +1,345 @@
 package ru.practicum.ewmservice.client;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
 import ru.practicum.ewmservice.customException.ValidationInternalException;
+import ru.practicum.ewmservice.model.dto.BatchHitResponse;
 import ru.practicum.ewmservice.model.dto.EndpointHit;
+import ru.practicum.ewmservice.model.dto.StatsRequest;
 import ru.practicum.ewmservice.model.dto.ViewStats;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class StatsClient {
+    // Значения начала и конца временного диапазона - обязательны по ТЗ.
+    // Но в ТЗ не указано откуда берется их значения. Поэтому берем с запасом.
+    // В файл параметров не выносятся, поскольку это просто заглушки,
+    // необходимые из-за упрощения учебного ТЗ.
+    private static final String STATS_START = "2022-01-01 00:00:00";
+    private static final String STATS_END = "2100-01-01 00:00:00";
     private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    // Для поля views точный подсчёт уникальных IP не нужен, достаточно оценки по HyperLogLog.
+    @Value("${stats-server.approximate-views}")
+    boolean approximateViews;
+    // Начиная с этого числа событий статистика запрашивается через POST /stats/query.
+    @Value("${stats-server.stats.post-threshold}")
+    int postThreshold;
+    // Предел ожидания ответа сервера статистики: зависший сервер не должен держать потоки запросов и отправки.
+    @Value("${stats-server.timeout-ms}")
+    long timeoutMs;
+    // Хит отправляется в потоке запроса, и следующий GET /stats его уже видит. Буфер - только если сервер не ответил.
+    @Value("${stats-server.hits.synchronous}")
+    boolean synchronous;
+    @Value("${stats-server.hits.buffer-capacity}")
+    int bufferCapacity;
+    @Value("${stats-server.hits.batch-size}")
+    int batchSize;
+    @Value("${stats-server.hits.flush-interval-ms}")
+    long flushIntervalMs;
+    @Value("${stats-server.hits.retry-interval-ms}")
+    long retryIntervalMs;
+    @Value("${stats-server.hits.overflow}")
+    OverflowPolicy overflowPolicy;
+    @Value("${stats-server.hits.spill-file}")
+    Path spillFile;
 
+    private final Object spillLock = new Object();
+    private BlockingDeque<EndpointHit> buffer;
+    private Thread sender;
+    private volatile boolean running;
+    private volatile boolean spillPending;
+    private Counter sentCounter;
+    private Counter droppedCounter;
+    private Counter spilledCounter;
+    private Counter delayedCounter;
+    private Timer lagTimer;
+
+    /**
+     * Что делать с хитами, которые не помещаются в буфер или не были приняты сервером статистики.
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST, // Вытесняются самые старые хиты буфера, неотправленная пачка повторяется.
+        SPILL        // Хиты дописываются в файл и досылаются, когда сервер снова принимает хиты.
+    }
+
+    @PostConstruct
+    void start() {
+        buffer = new LinkedBlockingDeque<>(bufferCapacity);
+        Gauge.builder("ewm.hits.buffer.depth", buffer, BlockingDeque::size)
+                .description("Hits waiting to be sent to the statistics server")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("ewm.hits.lag")
+                .description("Time from a hit to its delivery to the statistics server")
+                .register(meterRegistry);
+        sentCounter = meterRegistry.counter("ewm.hits.sent");
+        droppedCounter = meterRegistry.counter("ewm.hits.dropped");
+        spilledCounter = meterRegistry.counter("ewm.hits.spilled");
+        delayedCounter = meterRegistry.counter("ewm.hits.delayed");
+        spillPending = Files.exists(spillFile) || Files.exists(replayFile());
+        running = true;
+        sender = new Thread(this::sendLoop, "stats-hit-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        sender.interrupt();
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+        // Последняя попытка отправить остаток буфера. При неудаче он сохраняется в файл или теряется.
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            if (!deliver(batch)) {
+                if (overflowPolicy == OverflowPolicy.SPILL)
+                    spill(batch);
+                else
+                    droppedCounter.increment(batch.size());
+            }
+            batch.clear();
+        }
+        log.info("Hit sender stopped, buffer drained.");
+    }
+
+
+    /**
+     * Отправка хита без ожидания ответа сервера статистики.
+     * Хит ставится в ограниченный буфер, фоновый поток отправляет буфер пачками через /hit/batch,
+     * поэтому в статистике он появляется с задержкой до stats-server.hits.flush-interval-ms.
+     * С stats-server.hits.synchronous хит отправляется сразу, а в буфер попадает, только если отправка не удалась.
+     * При переполнении буфера и недоступности сервера действует stats-server.hits.overflow.
+     */
     public void sendHit(EndpointHit endpointHit) {
-        String url = "/hit";
-        ResponseEntity<Void> responseEntity = webClient.post()
+        if (synchronous && deliver(List.of(endpointHit)))
+            return;
+        if (buffer.offerLast(endpointHit))
+            return;
+        if (overflowPolicy == OverflowPolicy.SPILL) {
+            spill(List.of(endpointHit));
+            return;
+        }
+        while (!buffer.offerLast(endpointHit)) {
+            if (buffer.pollFirst() != null)
+                droppedCounter.increment();
+        }
+    }
+
+    /**
+     * Пакетная отправка хитов одним запросом.
+     *
+     * @return Количество хитов, принятых сервером статистики.
+     */
+    public int sendHits(List<EndpointHit> endpointHits) {
+        String url = "/hit/batch";
+        BatchHitResponse response = webClient.post()
                 .uri(url)
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(Mono.just(endpointHit), EndpointHit.class)
+                .bodyValue(endpointHits)
                 .retrieve()
-                .toBodilessEntity()
-                .block();
-        if (responseEntity == null)
+                .bodyToMono(BatchHitResponse.class)
+                .block(Duration.ofMillis(timeoutMs));
+        if (response == null)
             throw new ValidationInternalException(
                     "Error saving statistics. The server did not return a response.");
-        else if (responseEntity.getStatusCode() != HttpStatus.OK)
-            throw new ValidationInternalException(String.format(
-                    "Error saving statistics. The server returned a response code=%s", responseEntity.getStatusCode()));
+        if (response.getRejected() != null && !response.getRejected().isEmpty())
+            log.warn("Statistics server rejected {} hit(s): {}", response.getRejected().size(), response.getRejected());
+        return response.getAccepted();
+    }
+
+    private void sendLoop() {
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                if (batch.isEmpty())
+                    collect(batch);
+                if (batch.isEmpty()) {
+                    if (spillPending && !replaySpill())
+                        Thread.sleep(retryIntervalMs);
+                    continue;
+                }
+                if (deliver(batch)) {
+                    batch.clear();
+                    if (spillPending && !replaySpill())
+                        Thread.sleep(retryIntervalMs);
+                } else {
+                    if (overflowPolicy == OverflowPolicy.SPILL) {
+                        spill(batch);
+                        batch.clear();
+                    }
+                    Thread.sleep(retryIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                // Остановка. Неотправленная пачка возвращается в буфер, его досылает stop().
+                running = false;
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    if (!buffer.offerFirst(batch.get(i)))
+                        droppedCounter.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Набор пачки: ждём первый хит до flush-interval, затем добираем до batch-size в пределах flush-interval.
+     */
+    private void collect(List<EndpointHit> batch) throws InterruptedException {
+        EndpointHit first = buffer.pollFirst(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null)
+            return;
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            buffer.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0)
+                break;
+            EndpointHit next = buffer.pollFirst(remaining, TimeUnit.NANOSECONDS);
+            if (next == null)
+                break;
+            batch.add(next);
+        }
+    }
+
+    private boolean deliver(List<EndpointHit> batch) {
+        try {
+            sendHits(batch);
+        } catch (RuntimeException e) {
+            delayedCounter.increment(batch.size());
+            log.warn("Failed to send {} hit(s) to the statistics server: {}", batch.size(), e.getMessage());
+            return false;
+        }
+        sentCounter.increment(batch.size());
+        LocalDateTime now = LocalDateTime.now();
+        batch.forEach(hit -> lagTimer.record(Duration.between(hit.getTimestamp(), now)));
+        return true;
+    }
+
+    private void spill(List<EndpointHit> hits) {
+        if (appendToSpill(hits))
+            spilledCounter.increment(hits.size());
+    }
+
+    private boolean appendToSpill(List<EndpointHit> hits) {
+        synchronized (spillLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (EndpointHit hit : hits) {
+                    writer.write(objectMapper.writeValueAsString(hit));
+                    writer.newLine();
+                }
+                spillPending = true;
+                return true;
+            } catch (IOException e) {
+                droppedCounter.increment(hits.size());
+                log.error("Failed to spill {} hit(s) to {}.", hits.size(), spillFile, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Досылка хитов из файла. Файл переименовывается, чтобы новые хиты писались в свежий файл.
+     * Если сервер снова перестал принимать хиты, неотправленный остаток дописывается в новый файл.
+     * При аварийной остановке во время досылки часть хитов может быть отправлена повторно.
+     *
+     * @return false, если досылка не удалась.
+     */
+    private boolean replaySpill() {
+        Path replay = replayFile();
+        synchronized (spillLock) {
+            try {
+                if (!Files.exists(replay)) {
+                    if (!Files.exists(spillFile)) {
+                        spillPending = false;
+                        return true;
+                    }
+                    Files.move(spillFile, replay);
+                }
+            } catch (IOException e) {
+                log.error("Failed to replay spilled hits from {}.", spillFile, e);
+                return false;
+            }
+        }
+        boolean delivered = true;
+        try (BufferedReader reader = Files.newBufferedReader(replay, StandardCharsets.UTF_8)) {
+            List<EndpointHit> batch = new ArrayList<>(batchSize);
+            String line;
+            while (delivered && (line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                batch.add(objectMapper.readValue(line, EndpointHit.class));
+                if (batch.size() == batchSize)
+                    delivered = replayBatch(batch, reader);
+            }
+            if (delivered && !batch.isEmpty())
+                delivered = replayBatch(batch, reader);
+        } catch (IOException e) {
+            log.error("Failed to replay spilled hits from {}.", replay, e);
+            return false;
+        }
+        try {
+            Files.delete(replay);
+        } catch (IOException e) {
+            log.error("Failed to delete replayed hits file {}.", replay, e);
+        }
+        return delivered;
+    }
+
+    /**
+     * Отправка очередной пачки из файла. При неудаче пачка и непрочитанный остаток файла
+     * дописываются в файл для следующей досылки.
+     */
+    private boolean replayBatch(List<EndpointHit> batch, BufferedReader reader) throws IOException {
+        if (deliver(batch)) {
+            batch.clear();
+            return true;
+        }
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank())
+                batch.add(objectMapper.readValue(line, EndpointHit.class));
+        }
+        appendToSpill(batch);
+        return false;
+    }
+
+    private Path replayFile() {
+        return spillFile.resolveSibling(spillFile.getFileName() + ".replay");
     }
 
     public Map<Long, Long> getStats(List<Long> eventIds) {
@@ -50,6 +348,7 @@ public class StatsClient {
 
     /**
      * Запрос количества просмотров событий к серверу статистики.
+     * Длинные списки событий передаются в теле POST /stats/query, а не в строке запроса GET /stats.
      *
      * @param eventIds Спикок ID событий.
      * @param unique   Флаг уникальных IP.
@@ -58,17 +357,29 @@ public class StatsClient {
     public Map<Long, Long> getStats(List<Long> eventIds, boolean unique) {
         if (eventIds != null && eventIds.size() == 0)   // Если запросный список пустой, то не нужно дергать базу.
             return new HashMap<>();                     // Это возможно при обработке подборок событий.
+        List<ViewStats> resp = eventIds != null && eventIds.size() >= postThreshold
+                ? postStats(eventIds, unique)
+                : getStatsByUrl(eventIds, unique);
+
+        if (resp == null) {
+            return new HashMap<>();
+        } else {
+            return resp.stream()
+                    .collect(Collectors.toMap(
+                            vs -> Long.parseLong(vs.getUri().split("/", 0)[2]),
+                            vs -> vs.getHits()));
+        }
+    }
+
+    private List<ViewStats> getStatsByUrl(List<Long> eventIds, boolean unique) {
         StringBuilder sbUrl = new StringBuilder();
         sbUrl.append("/stats")
-                // Значения начала и конца временного диапазона - обязательны по ТЗ.
-                // Но в ТЗ не указано откуда берется их значения. Поэтому берем с запасом.
-                // В файл параметров не выносятся, поскольку это просто заглушки,
-                // необходимые из-за упрощения учебного ТЗ.
                 .append("?start=")
-                .append(URLEncoder.encode("2022-01-01 00:00:00", StandardCharsets.UTF_8))
+                .append(URLEncoder.encode(STATS_START, StandardCharsets.UTF_8))
                 .append("&end=")
-                .append(URLEncoder.encode("2100-01-01 00:00:00", StandardCharsets.UTF_8))
-                .append("&unique=").append(unique);
+                .append(URLEncoder.encode(STATS_END, StandardCharsets.UTF_8))
+                .append("&unique=").append(unique)
+                .append("&approximate=").append(approximateViews);
         if (eventIds != null) {
             sbUrl.append("&uris=");
             Iterator<Long> id = eventIds.iterator();
@@ -80,21 +391,28 @@ public class StatsClient {
             }
         }
 
-        List<ViewStats> resp = webClient.get()
+        return webClient.get()
                 .uri(sbUrl.toString())
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
                 .bodyToMono(new ParameterizedTypeReference<List<ViewStats>>() {
                 })
-                .block();
+                .block(Duration.ofMillis(timeoutMs));
+    }
 
-        if (resp == null) {
-            return new HashMap<>();
-        } else {
-            return resp.stream()
-                    .collect(Collectors.toMap(
-                            vs -> Long.parseLong(vs.getUri().split("/", 0)[2]),
-                            vs -> vs.getHits()));
-        }
+    private List<ViewStats> postStats(List<Long> eventIds, boolean unique) {
+        List<String> uris = eventIds.stream()
+                .map(id -> "/events/" + id)
+                .collect(Collectors.toList());
+        StatsRequest request = new StatsRequest(STATS_START, STATS_END, uris, unique, approximateViews);
+        return webClient.post()
+                .uri("/stats/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<ViewStats>>() {
+                })
+                .block(Duration.ofMillis(timeoutMs));
     }
 }
@@ -0,0 +1,134 @@
+package ru.practicum.ewmservice.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш количества просмотров событий перед сервером статистики.
+ * Записи живут stats-server.views-cache.ttl-ms, при переполнении вытесняются давно не читавшиеся.
+ * Запрашиваются только отсутствующие в кэше события, причём одновременные промахи по одному событию
+ * обслуживаются одним запросом: остальные потоки ждут результат первого.
+ */
+@Service
+@RequiredArgsConstructor
+public class ViewsCache {
+    private final StatsClient statsClient;
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, CompletableFuture<Long>> loading = new ConcurrentHashMap<>();
+    private Map<Long, Entry> entries;
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter coalescedCounter;
+    @Value("${stats-server.views-cache.ttl-ms}")
+    long ttlMs;
+    @Value("${stats-server.views-cache.max-size}")
+    int maxSize;
+
+    @PostConstruct
+    void init() {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        Gauge.builder("ewm.views.cache.size", this, ViewsCache::size)
+                .description("Events with cached view counts")
+                .register(meterRegistry);
+        hitCounter = meterRegistry.counter("ewm.views.cache.hits");
+        missCounter = meterRegistry.counter("ewm.views.cache.misses");
+        coalescedCounter = meterRegistry.counter("ewm.views.cache.coalesced");
+    }
+
+    /**
+     * Количество просмотров событий.
+     *
+     * @param eventIds Список ID событий, повторы допускаются.
+     * @return Мапа (id события, количество просмотров).
+     */
+    public Map<Long, Long> getViews(List<Long> eventIds) {
+        Map<Long, Long> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Long id : new LinkedHashSet<>(eventIds)) {
+                Entry entry = entries.get(id);
+                if (entry != null && entry.expiresAt > now)
+                    result.put(id, entry.views);
+                else
+                    missing.add(id);
+            }
+        }
+        hitCounter.increment(result.size());
+        if (missing.isEmpty())
+            return result;
+        missCounter.increment(missing.size());
+
+        Map<Long, CompletableFuture<Long>> own = new HashMap<>();
+        Map<Long, CompletableFuture<Long>> foreign = new HashMap<>();
+        for (Long id : missing) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            CompletableFuture<Long> inFlight = loading.putIfAbsent(id, future);
+            if (inFlight == null)
+                own.put(id, future);
+            else
+                foreign.put(id, inFlight);
+        }
+        if (!own.isEmpty())
+            load(own, result);
+        coalescedCounter.increment(foreign.size());
+        try {
+            foreign.forEach((id, future) -> result.put(id, future.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return result;
+    }
+
+    private void load(Map<Long, CompletableFuture<Long>> own, Map<Long, Long> result) {
+        try {
+            Map<Long, Long> loaded = statsClient.getStats(new ArrayList<>(own.keySet()));
+            long expiresAt = System.currentTimeMillis() + ttlMs;
+            synchronized (this) {
+                own.keySet().forEach(id -> entries.put(id, new Entry(loaded.getOrDefault(id, 0L), expiresAt)));
+            }
+            own.forEach((id, future) -> {
+                long views = loaded.getOrDefault(id, 0L);
+                result.put(id, views);
+                future.complete(views);
+            });
+        } catch (RuntimeException e) {
+            own.values().forEach(future -> future.completeExceptionally(e));
+            throw e;
+        } finally {
+            own.forEach(loading::remove);
+        }
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final long views;
+        private final long expiresAt;
+    }
+}
@@ -2,6 +2,7 @@ package ru.practicum.ewmservice.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -32,13 +33,15 @@ public class CategoryController {
               /* ******************* */
 
     @GetMapping("/categories")
-    public List<CategoryDto> findAll(
+    public ResponseEntity<List<CategoryDto>> findAll(
             @PositiveOrZero @RequestParam(required = false, defaultValue = "0") Integer from,
-            @Positive @RequestParam(required = false, defaultValue = "10") Integer size
+            @Positive @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false, defaultValue = "false") Boolean total
     ) {
         log.info("Endpoint 'Find categories' " +
-                "from={}, size={}.", from, size);
-        return categoryService.findAll(from, size);
+                "from={}, size={}, after={}, total={}.", from, size, after, total);
+        return categoryService.findAll(from, size, after, total).toResponseEntity();
     }
 
     @GetMapping("/categories/{catId}")
@@ -2,6 +2,7 @@ package ru.practicum.ewmservice.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -40,14 +41,16 @@ public class CompilationController {
     }
 
     @GetMapping("/compilations")
-    public List<CompilationDto> findAll(
+    public ResponseEntity<List<CompilationDto>> findAll(
             @RequestParam(required = false) Optional<Boolean> pinned,
             @PositiveOrZero @RequestParam(required = false, defaultValue = "0") Integer from,
-            @Positive @RequestParam(required = false, defaultValue = "10") Integer size
+            @Positive @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false, defaultValue = "false") Boolean total
     ) {
         log.info("Endpoint 'Find compilations' " +
-                "pinned={}, from={}, size={}.", pinned, from, size);
-        return compilationService.findAll(pinned, from, size);
+                "pinned={}, from={}, size={}, after={}, total={}.", pinned, from, size, after, total);
+        return compilationService.findAll(pinned, from, size, after, total).toResponseEntity();
     }
 
 
@@ -2,6 +2,7 @@ package ru.practicum.ewmservice.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -16,6 +17,8 @@ import ru.practicum.ewmservice.model.dto.EventFullDto;
 import ru.practicum.ewmservice.model.dto.EventShortDto;
 import ru.practicum.ewmservice.model.dto.NewEventDto;
 import ru.practicum.ewmservice.model.dto.ParticipationRequestDto;
+import ru.practicum.ewmservice.model.dto.RequestStatusUpdateRequest;
+import ru.practicum.ewmservice.model.dto.RequestStatusUpdateResult;
 import ru.practicum.ewmservice.model.dto.UpdateEventRequest;
 import ru.practicum.ewmservice.service.EventService;
 
@@ -48,16 +51,21 @@ public class EventController {
     }
 
     @GetMapping("/events")
-    public List<EventFullDto> findAll(
+    public ResponseEntity<List<EventFullDto>> findAll(
             @RequestParam(required = false) String text,
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) Boolean paid,
             @RequestParam(required = false) String rangeStart,
             @RequestParam(required = false) String rangeEnd,
             @RequestParam(required = false) Boolean onlyAvailable,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lon,
+            @Positive @RequestParam(required = false) Double radius,
             @RequestParam(required = false) String sort,
             @PositiveOrZero @RequestParam(required = false, defaultValue = "0") Integer from,
             @Positive @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false, defaultValue = "false") Boolean total,
             HttpServletRequest request
     ) {
         log.info("Endpoint 'Find events', public part. ");
@@ -65,9 +73,10 @@ public class EventController {
         String ip = request.getRemoteAddr();
         log.info("endpoint path: {}", uri);
         log.info("client ip: {}", ip);
-        return eventService.findAll(text, categories, paid, rangeStart, rangeEnd, onlyAvailable, sort,
-                from, size,
-                uri, ip);
+        return eventService.findAll(text, categories, paid, rangeStart, rangeEnd, onlyAvailable, lat, lon, radius,
+                sort,
+                from, size, after, total,
+                uri, ip).toResponseEntity();
     }
 
 
@@ -142,6 +151,17 @@ public class EventController {
         return eventService.findRequestsToEvent(userId, eventId);
     }
 
+    @PatchMapping("/users/{userId}/events/{eventId}/requests")
+    public List<RequestStatusUpdateResult> updateRequestsStatus(
+            @PathVariable Long userId,
+            @PathVariable Long eventId,
+            @Validated @RequestBody RequestStatusUpdateRequest updateRequest
+    ) {
+        log.info("Endpoint 'Change status of event requests by initiator' " +
+                "initiatorID={}, eventID={}, {}.", userId, eventId, updateRequest);
+        return eventService.updateRequestsStatus(userId, eventId, updateRequest);
+    }
+
     @PatchMapping("/users/{userId}/events/{eventId}/requests/{reqId}/confirm")
     public ParticipationRequestDto confirmRequestByInitiator(
             @PathVariable Long userId,
@@ -170,19 +190,27 @@ public class EventController {
               /* ****************** */
 
     @GetMapping("/admin/events")
-    public List<EventFullDto> findByAdmin(
+    public ResponseEntity<List<EventFullDto>> findByAdmin(
             @RequestParam(required = false) List<Long> users,
             @RequestParam(required = false) List<String> states,
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) String rangeStart,
             @RequestParam(required = false) String rangeEnd,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lon,
+            @Positive @RequestParam(required = false) Double radius,
             @PositiveOrZero @RequestParam(required = false, defaultValue = "0") Integer from,
-            @Positive @RequestParam(required = false, defaultValue = "10") Integer size
+            @Positive @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false, defaultValue = "false") Boolean total
     ) {
         log.info("Endpoint 'Find events by admin' " +
-                        "users={}, states={}, categories={}, rangeStart={}, rangeEnd={}, from={}, size={}.",
-                users, states, categories, rangeStart, rangeEnd, from, size);
-        return eventService.findByAdmin(users, states, categories, rangeStart, rangeEnd, from, size);
+                        "users={}, states={}, categories={}, rangeStart={}, rangeEnd={}, lat={}, lon={}, radius={}, " +
+                        "from={}, size={}, after={}, total={}.",
+                users, states, categories, rangeStart, rangeEnd, lat, lon, radius, from, size, after, total);
+        return eventService.findByAdmin(users, states, categories, rangeStart, rangeEnd, lat, lon, radius,
+                        from, size, after, total)
+                .toResponseEntity();
     }
 
     @PutMapping("/admin/events/{eventId}")
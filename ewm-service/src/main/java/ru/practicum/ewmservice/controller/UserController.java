@@ -2,6 +2,7 @@ package ru.practicum.ewmservice.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,14 +32,16 @@ public class UserController {
               /* ****************** */
 
     @GetMapping("/admin/users")
-    public List<UserDto> find(
+    public ResponseEntity<List<UserDto>> find(
             @RequestParam(required = false) List<Long> ids,
             @PositiveOrZero @RequestParam(required = false, defaultValue = "0") Integer from,
-            @Positive @RequestParam(required = false, defaultValue = "10") Integer size
+            @Positive @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false, defaultValue = "false") Boolean total
     ) {
         log.info("Endpoint 'Find users' " +
-                "RequestBody={}, from={}, size={}.", ids, from, size);
-        return userService.find(ids, from, size);
+                "RequestBody={}, from={}, size={}, after={}, total={}.", ids, from, size, after, total);
+        return userService.find(ids, from, size, after, total).toResponseEntity();
     }
 
     @PostMapping("/admin/users")
@@ -1,6 +1,7 @@
 package ru.practicum.ewmservice.mapper;
 
 import ru.practicum.ewmservice.model.Compilation;
+import ru.practicum.ewmservice.model.CompilationView;
 import ru.practicum.ewmservice.model.Event;
 import ru.practicum.ewmservice.model.dto.CompilationDto;
 import ru.practicum.ewmservice.model.dto.NewCompilationDto;
@@ -26,4 +27,13 @@ public class CompilationMapper {
                 .events(EventMapper.toEventShortDto(compilation.getEvents(), views))
                 .build();
     }
+
+    public static CompilationDto toCompilationDto(CompilationView compilation, Map<Long, Long> views) {
+        return CompilationDto.builder()
+                .id(compilation.getId())
+                .title(compilation.getTitle())
+                .pinned(compilation.getPinned())
+                .events(EventMapper.toEventShortDtoFromViews(compilation.getEvents(), views))
+                .build();
+    }
 }
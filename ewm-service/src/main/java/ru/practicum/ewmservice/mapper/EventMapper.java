@@ -2,10 +2,13 @@ package ru.practicum.ewmservice.mapper;
 
 import ru.practicum.ewmservice.model.Category;
 import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventShortView;
+import ru.practicum.ewmservice.model.dto.CategoryDto;
 import ru.practicum.ewmservice.model.dto.EventFullDto;
 import ru.practicum.ewmservice.model.dto.EventShortDto;
 import ru.practicum.ewmservice.model.dto.Location;
 import ru.practicum.ewmservice.model.dto.NewEventDto;
+import ru.practicum.ewmservice.model.dto.UserShortDto;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -37,12 +40,11 @@ public class EventMapper {
     }
 
     public static EventFullDto toEventFullDto(Event event, Map<Long, Long> views) {
-        long confirmedMembers = Optional.ofNullable(event.getConfirmedMembers()).orElse(new ArrayList<>()).size();
         return EventFullDto.builder()
                 .id(event.getId())
                 .annotation(event.getAnnotation())
                 .category(CategoryMapper.toCategoryDto(event.getCategory()))
-                .confirmedRequests(confirmedMembers)
+                .confirmedRequests(Optional.ofNullable(event.getConfirmedRequests()).orElse(0L))
                 .createdOn(event.getCreatedOn())
                 .description(event.getDescription())
                 .eventDate(event.getEventDate())
@@ -65,12 +67,11 @@ public class EventMapper {
     }
 
     public static EventShortDto toEventShortDto(Event event, Map<Long, Long> views) {
-        long confirmedMembers = Optional.ofNullable(event.getConfirmedMembers()).orElse(new ArrayList<>()).size();
         return EventShortDto.builder()
                 .id(event.getId())
                 .annotation(event.getAnnotation())
                 .category(CategoryMapper.toCategoryDto(event.getCategory()))
-                .confirmedRequests(confirmedMembers)
+                .confirmedRequests(Optional.ofNullable(event.getConfirmedRequests()).orElse(0L))
                 .eventDate(event.getEventDate())
                 .initiator(UserMapper.toUserShortDto(event.getInitiator()))
                 .paid(event.getPaid())
@@ -78,4 +79,30 @@ public class EventMapper {
                 .views(Optional.ofNullable(views.get(event.getId())).orElse(0L))
                 .build();
     }
+
+    public static List<EventShortDto> toEventShortDtoFromViews(List<EventShortView> events, Map<Long, Long> views) {
+        return events.stream()
+                .map(e -> toEventShortDto(e, views))
+                .collect(Collectors.toList());
+    }
+
+    public static EventShortDto toEventShortDto(EventShortView event, Map<Long, Long> views) {
+        return EventShortDto.builder()
+                .id(event.getId())
+                .annotation(event.getAnnotation())
+                .category(CategoryDto.builder()
+                        .id(event.getCategoryId())
+                        .name(event.getCategoryName())
+                        .build())
+                .confirmedRequests(Optional.ofNullable(event.getConfirmedRequests()).orElse(0L))
+                .eventDate(event.getEventDate())
+                .initiator(UserShortDto.builder()
+                        .id(event.getInitiatorId())
+                        .name(event.getInitiatorName())
+                        .build())
+                .paid(event.getPaid())
+                .title(event.getTitle())
+                .views(Optional.ofNullable(views.get(event.getId())).orElse(0L))
+                .build();
+    }
 }
\ No newline at end of file
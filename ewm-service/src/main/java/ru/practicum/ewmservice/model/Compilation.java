@@ -14,20 +14,35 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.util.List;
 
 @Entity
 @Table(name = "compilations")
+@NamedEntityGraph(name = Compilation.WITH_EVENTS,
+        attributeNodes = @NamedAttributeNode(value = "events", subgraph = "event"),
+        subgraphs = @NamedSubgraph(name = "event", attributeNodes = {
+                @NamedAttributeNode("category"),
+                @NamedAttributeNode("initiator")
+        }))
 @Getter
 @Setter
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 public class Compilation {
+    /**
+     * План выборки подборки с событиями, их категориями и инициаторами одним запросом.
+     */
+    public static final String WITH_EVENTS = "Compilation.withEvents";
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "compilations_seq")
+    @SequenceGenerator(name = "compilations_seq", sequenceName = "compilations_seq", allocationSize = 50)
     @Column(name = "compilation_id")
     private Long id;
 
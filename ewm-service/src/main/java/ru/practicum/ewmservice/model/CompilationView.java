@@ -0,0 +1,16 @@
+package ru.practicum.ewmservice.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Модель чтения подборки с краткой информацией о её событиях.
+ */
+@Value
+public class CompilationView {
+    Long id;
+    String title;
+    Boolean pinned;
+    List<EventShortView> events;
+}
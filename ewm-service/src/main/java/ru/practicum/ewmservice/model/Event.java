@@ -6,7 +6,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.Hibernate;
-import org.hibernate.annotations.WhereJoinTable;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.persistence.Column;
@@ -17,28 +16,36 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
-import javax.persistence.JoinTable;
-import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 
 import static ru.practicum.ewmservice.util.Constants.DATE_PATTERN;
 
 @Entity
 @Table(name = "events")
+@NamedEntityGraph(name = Event.WITH_CATEGORY_AND_INITIATOR, attributeNodes = {
+        @NamedAttributeNode("category"),
+        @NamedAttributeNode("initiator")
+})
 @Getter
 @Setter
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 public class Event {
+    /**
+     * План выборки списков событий: категория и инициатор, нужные маппингу в DTO, - в том же запросе.
+     */
+    public static final String WITH_CATEGORY_AND_INITIATOR = "Event.withCategoryAndInitiator";
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "events_seq")
+    @SequenceGenerator(name = "events_seq", sequenceName = "events_seq", allocationSize = 50)
     @Column(name = "event_id")
     private Long id;
 
@@ -90,14 +97,18 @@ public class Event {
     @Column(name = "title", length = 120)
     private String title;
 
-    @WhereJoinTable(clause = "status='CONFIRMED'")
-    @ManyToMany
-    @JoinTable(
-            name = "requests",
-            joinColumns = @JoinColumn(name = "event_id"),
-            inverseJoinColumns = @JoinColumn(name = "requester_id")
-    )
-    private List<User> confirmedMembers = new ArrayList<>();
+    /**
+     * Просмотры на момент последней синхронизации с сервером статистики, только для сортировки.
+     * Колонку ведёт EventViewsSyncService, поэтому JPA её не пишет.
+     */
+    @Column(name = "views", insertable = false, updatable = false)
+    private Long views;
+
+    /**
+     * Количество подтверждённых заявок. Меняется только атомарными UPDATE в EventRepository.
+     */
+    @Column(name = "confirmed_requests", insertable = false, updatable = false)
+    private Long confirmedRequests;
 
     @Override
     public boolean equals(Object o) {
@@ -0,0 +1,23 @@
+package ru.practicum.ewmservice.model;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Модель чтения для краткой информации о событии: только колонки EventShortDto, категория
+ * и инициатор - по имени. Выбирается проекцией, в контекст персистентности не попадает.
+ */
+@Value
+public class EventShortView {
+    Long id;
+    String annotation;
+    Long categoryId;
+    String categoryName;
+    Long confirmedRequests;
+    LocalDateTime eventDate;
+    Long initiatorId;
+    String initiatorName;
+    Boolean paid;
+    String title;
+}
@@ -3,6 +3,7 @@ package ru.practicum.ewmservice.model;
 public enum EventSort {
     EVENT_DATE,
     VIEWS,
+    DISTANCE,
     UNSORTED;
 
     public static EventSort convert(String sort) {
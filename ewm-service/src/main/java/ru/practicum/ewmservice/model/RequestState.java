@@ -5,4 +5,12 @@ public enum RequestState {
     CONFIRMED,
     REJECTED,
     CANCELED;
+
+    public static RequestState convert(String state) {
+        try {
+            return valueOf(state.toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+    }
 }
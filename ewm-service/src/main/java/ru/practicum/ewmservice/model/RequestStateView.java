@@ -0,0 +1,12 @@
+package ru.practicum.ewmservice.model;
+
+import lombok.Value;
+
+/**
+ * Модель чтения: статус заявки без загрузки заявителя и события.
+ */
+@Value
+public class RequestStateView {
+    Long id;
+    RequestState state;
+}
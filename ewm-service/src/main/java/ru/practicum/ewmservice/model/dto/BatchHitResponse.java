@@ -0,0 +1,29 @@
+package ru.practicum.ewmservice.model.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Ответ сервера статистики на пакетную запись хитов.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class BatchHitResponse {
+    private Integer accepted;
+    private List<Rejected> rejected;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @ToString
+    public static class Rejected {
+        private Integer index;
+        private String message;
+    }
+}
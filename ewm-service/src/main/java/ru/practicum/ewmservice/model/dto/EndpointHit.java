@@ -1,14 +1,22 @@
 package ru.practicum.ewmservice.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
+import static ru.practicum.ewmservice.util.Constants.DATE_PATTERN;
+
 @Getter
+@ToString
+@NoArgsConstructor
 public class EndpointHit {
     private String app;
     private String uri;
     private String ip;
+    @JsonFormat(pattern = DATE_PATTERN)
     private LocalDateTime timestamp;
 
     public EndpointHit(String app, String uri, String ip) {
@@ -0,0 +1,26 @@
+package ru.practicum.ewmservice.model.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Изменение статуса нескольких заявок на участие в событии текущего пользователя
+ */
+@Getter
+@Setter
+@ToString
+public class RequestStatusUpdateRequest {
+    @NotEmpty
+    private List<@NotNull Long> requestIds;
+    /**
+     * Новый статус: CONFIRMED или REJECTED.
+     */
+    @NotBlank
+    private String status;
+}
@@ -0,0 +1,24 @@
+package ru.practicum.ewmservice.model.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Результат изменения статуса одной заявки из пакета
+ */
+@Getter
+@Setter
+@Builder
+public class RequestStatusUpdateResult {
+    private Long requestId;
+    /**
+     * Статус заявки после обработки пакета, null - заявка не найдена.
+     */
+    private String status;
+    private Boolean updated;
+    /**
+     * Причина, по которой статус не изменён.
+     */
+    private String reason;
+}
@@ -0,0 +1,21 @@
+package ru.practicum.ewmservice.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Параметры запроса статистики в теле POST /stats/query.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class StatsRequest {
+    private String start;
+    private String end;
+    private List<String> uris;
+    private boolean unique;
+    private boolean approximate;
+}
@@ -1,18 +1,24 @@
 package ru.practicum.ewmservice.service;
 
+import com.querydsl.core.BooleanBuilder;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewmservice.customException.ValidationNotFoundException;
 import ru.practicum.ewmservice.mapper.CategoryMapper;
 import ru.practicum.ewmservice.model.Category;
+import ru.practicum.ewmservice.model.QCategory;
 import ru.practicum.ewmservice.model.dto.CategoryDto;
 import ru.practicum.ewmservice.model.dto.NewCategoryDto;
 import ru.practicum.ewmservice.storage.CategoryRepository;
+import ru.practicum.ewmservice.storage.TotalCounter;
+import ru.practicum.ewmservice.util.CursorPage;
 import ru.practicum.ewmservice.util.CustomPageRequest;
+import ru.practicum.ewmservice.util.PageCursor;
 
-import java.util.List;
 import java.util.stream.Collectors;
 
 import static ru.practicum.ewmservice.mapper.CategoryMapper.toCategoryDto;
@@ -22,12 +28,22 @@ import static ru.practicum.ewmservice.mapper.CategoryMapper.toCategoryDto;
 @Transactional(readOnly = true)
 public class CategoryService {
     private final CategoryRepository categoryRepository;
+    private final TotalCounter totalCounter;
+    private final EventListingCache eventListingCache;
 
-    public List<CategoryDto> findAll(Integer from, Integer size) {
-        Pageable pageable = CustomPageRequest.of(from, size);
-        return categoryRepository.findAll(pageable).stream()
+    public CursorPage<CategoryDto> findAll(Integer from, Integer size, String after, boolean total) {
+        BooleanBuilder findCriteria = new BooleanBuilder();
+        Long totalCount = total ? totalCounter.count(categoryRepository, findCriteria, "categories") : null;
+        // С курсором страница начинается после него, from не используется.
+        if (after != null)
+            findCriteria.and(QCategory.category.id.gt(PageCursor.decode(after, PageCursor.Kind.ID).getId()));
+        Pageable pageable = CustomPageRequest.of(after != null ? 0 : from, size, Sort.by("id"));
+        Slice<Category> categories = categoryRepository.findSlice(findCriteria, pageable);
+        return new CursorPage<>(categories.stream()
                 .map(CategoryMapper::toCategoryDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()),
+                PageCursor.next(categories, c -> PageCursor.ofId(c.getId())),
+                totalCount);
     }
 
     public CategoryDto findById(Long catId) {
@@ -41,6 +57,8 @@ public class CategoryService {
         category.setName(categoryDto.getName());
         // Контроль уникальности в БД. Обработка исключения в ErrorHandler.
         category = categoryRepository.save(category);
+        // Название категории входит в кэшированные ответы списка событий.
+        eventListingCache.invalidate();
         return toCategoryDto(category);
     }
 
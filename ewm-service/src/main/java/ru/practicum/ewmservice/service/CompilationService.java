@@ -1,26 +1,32 @@
 package ru.practicum.ewmservice.service;
 
+import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.core.types.dsl.Expressions;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.client.ViewsCache;
 import ru.practicum.ewmservice.customException.ValidationNotFoundException;
 import ru.practicum.ewmservice.mapper.CompilationMapper;
 import ru.practicum.ewmservice.model.Compilation;
+import ru.practicum.ewmservice.model.CompilationView;
 import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventShortView;
 import ru.practicum.ewmservice.model.QCompilation;
 import ru.practicum.ewmservice.model.QEvent;
 import ru.practicum.ewmservice.model.dto.CompilationDto;
 import ru.practicum.ewmservice.model.dto.NewCompilationDto;
 import ru.practicum.ewmservice.storage.CompilationRepository;
+import ru.practicum.ewmservice.storage.CompilationViewRepository;
 import ru.practicum.ewmservice.storage.EventRepository;
+import ru.practicum.ewmservice.storage.TotalCounter;
+import ru.practicum.ewmservice.util.CursorPage;
 import ru.practicum.ewmservice.util.CustomPageRequest;
+import ru.practicum.ewmservice.util.PageCursor;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -34,30 +40,37 @@ import static ru.practicum.ewmservice.mapper.CompilationMapper.toCompilationDto;
 @Transactional(readOnly = true)
 public class CompilationService {
     private final CompilationRepository compilationRepository;
+    private final CompilationViewRepository compilationViewRepository;
     private final EventService eventService;
     private final EventRepository eventRepository;
-    private final StatsClient statsClient;
+    private final ViewsCache viewsCache;
+    private final TotalCounter totalCounter;
 
     public CompilationDto findById(Long compId) {
-        Compilation comp = getCompilationById(compId);
-        Map<Long, Long> views = statsClient.getStats(eventService.getIds(comp.getEvents()));
+        CompilationView comp = compilationViewRepository.findById(compId)
+                .orElseThrow(() -> new ValidationNotFoundException(String
+                        .format("Compilation with id=%s not found.", compId)));
+        Map<Long, Long> views = viewsCache.getViews(getEventIds(List.of(comp)));
         return toCompilationDto(comp, views);
     }
 
-    public List<CompilationDto> findAll(Optional<Boolean> pinnedOptional, Integer from, Integer size) {
-        BooleanExpression byPinned = pinnedOptional.isPresent() ?
-                // Если параметр pinned задан - ищем заданное значение (закреплено или нет)
-                QCompilation.compilation.pinned.eq(pinnedOptional.get()) :
-                // Не задан - ищем все.
-                Expressions.asBoolean(true).isTrue();
-        Pageable pageable = CustomPageRequest.of(from, size);
-        Page<Compilation> compilations = compilationRepository.findAll(byPinned, pageable);
-        List<Event> events = new ArrayList<>();
-        compilations.forEach(c -> events.addAll(c.getEvents()));
-        Map<Long, Long> views = statsClient.getStats(eventService.getIds(events));
-        return compilationRepository.findAll(byPinned, pageable).stream()
+    public CursorPage<CompilationDto> findAll(Optional<Boolean> pinnedOptional, Integer from, Integer size,
+                                              String after, boolean total) {
+        BooleanBuilder findCriteria = new BooleanBuilder();
+        // Если параметр pinned задан - ищем заданное значение (закреплено или нет), не задан - ищем все.
+        pinnedOptional.ifPresent(pinned -> findCriteria.and(QCompilation.compilation.pinned.eq(pinned)));
+        Long totalCount = total ? totalCounter.count(compilationRepository, findCriteria, "compilations") : null;
+        // С курсором страница начинается после него, from не используется.
+        if (after != null)
+            findCriteria.and(QCompilation.compilation.id.gt(PageCursor.decode(after, PageCursor.Kind.ID).getId()));
+        Pageable pageable = CustomPageRequest.of(after != null ? 0 : from, size, Sort.by("id"));
+        Slice<CompilationView> compilations = compilationViewRepository.findSlice(findCriteria, pageable);
+        Map<Long, Long> views = viewsCache.getViews(getEventIds(compilations.getContent()));
+        return new CursorPage<>(compilations.stream()
                 .map(comp -> toCompilationDto(comp, views))
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()),
+                PageCursor.next(compilations, c -> PageCursor.ofId(c.getId())),
+                totalCount);
     }
 
     @Transactional
@@ -67,7 +80,7 @@ public class CompilationService {
                 .collect(Collectors.toList());
         Compilation comp = CompilationMapper.toCompilation(newCompilationDto, events);
         comp = compilationRepository.save(comp);
-        Map<Long, Long> views = statsClient.getStats(eventService.getIds(comp.getEvents()));
+        Map<Long, Long> views = viewsCache.getViews(eventService.getIds(comp.getEvents()));
         return toCompilationDto(comp, views);
     }
 
@@ -107,6 +120,14 @@ public class CompilationService {
         compilationRepository.save(comp);
     }
 
+    private List<Long> getEventIds(List<CompilationView> compilations) {
+        return compilations.stream()
+                .flatMap(c -> c.getEvents().stream())
+                .map(EventShortView::getId)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
     Compilation getCompilationById(Long compId) {
         return compilationRepository.findById(compId)
                 .orElseThrow(() -> new ValidationNotFoundException(String
@@ -0,0 +1,178 @@
+package ru.practicum.ewmservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewmservice.model.EventSort;
+import ru.practicum.ewmservice.model.dto.EventFullDto;
+import ru.practicum.ewmservice.util.CursorPage;
+import ru.practicum.ewmservice.util.SearchTerms;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Кэш ответов публичного списка событий (GET /events) по нормализованному набору параметров.
+ * Записи живут events.list-cache.ttl-ms - это и предел устаревания просмотров в ответе.
+ * Одновременные промахи по одному ключу обслуживаются одним запросом к БД.
+ * Любое изменение событий, их счётчиков подтверждённых заявок или категорий сбрасывает весь кэш:
+ * сразу и ещё раз после завершения транзакции, чтобы не сохранить прочитанное до коммита.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventListingCache {
+    private final MeterRegistry meterRegistry;
+    private final Map<Key, CompletableFuture<CursorPage<EventFullDto>>> loading = new ConcurrentHashMap<>();
+    private Map<Key, Entry> entries;
+    // Номер сброса: загрузка, начатая до сброса, в кэш не попадает.
+    private long generation;
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter coalescedCounter;
+    @Value("${events.list-cache.ttl-ms}")
+    long ttlMs;
+    @Value("${events.list-cache.max-size}")
+    int maxSize;
+
+    @PostConstruct
+    void init() {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        Gauge.builder("ewm.events.list-cache.size", this, EventListingCache::size)
+                .description("Cached public event listings")
+                .register(meterRegistry);
+        hitCounter = meterRegistry.counter("ewm.events.list-cache.hits");
+        missCounter = meterRegistry.counter("ewm.events.list-cache.misses");
+        coalescedCounter = meterRegistry.counter("ewm.events.list-cache.coalesced");
+    }
+
+    /**
+     * Ответ из кэша или от loader. Исключения loader не кэшируются и передаются всем ожидавшим потокам.
+     */
+    public CursorPage<EventFullDto> get(Key key, Supplier<CursorPage<EventFullDto>> loader) {
+        long startedGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hitCounter.increment();
+                return entry.page;
+            }
+            startedGeneration = generation;
+        }
+        CompletableFuture<CursorPage<EventFullDto>> future = new CompletableFuture<>();
+        CompletableFuture<CursorPage<EventFullDto>> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            coalescedCounter.increment();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        missCounter.increment();
+        try {
+            CursorPage<EventFullDto> page = loader.get();
+            long expiresAt = System.currentTimeMillis() + ttlMs;
+            synchronized (this) {
+                if (generation == startedGeneration)
+                    entries.put(key, new Entry(page, expiresAt));
+            }
+            future.complete(page);
+            return page;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key);
+        }
+    }
+
+    /**
+     * Сброс кэша после изменения данных, попадающих в публичный список событий.
+     */
+    public void invalidate() {
+        clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+    }
+
+    private synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final CursorPage<EventFullDto> page;
+        private final long expiresAt;
+    }
+
+    /**
+     * Нормализованные параметры запроса: слова text и категории - без порядка и повторов,
+     * sort - значение EventSort, from с курсором не учитывается.
+     */
+    @lombok.Value
+    public static class Key {
+        TreeSet<String> terms;
+        TreeSet<Long> categories;
+        Boolean paid;
+        String rangeStart;
+        String rangeEnd;
+        boolean onlyAvailable;
+        Double lat;
+        Double lon;
+        Double radius;
+        EventSort sort;
+        int from;
+        int size;
+        String after;
+        boolean total;
+
+        public static Key of(String text, List<Long> categories, Boolean paid, String rangeStart, String rangeEnd,
+                             Boolean onlyAvailable, Double lat, Double lon, Double radius, String sort,
+                             Integer from, Integer size, String after, boolean total) {
+            return new Key(text == null ? null : new TreeSet<>(SearchTerms.parse(text)),
+                    categories == null ? new TreeSet<>() : new TreeSet<>(categories),
+                    paid,
+                    rangeStart,
+                    rangeEnd,
+                    Boolean.TRUE.equals(onlyAvailable),
+                    lat,
+                    lon,
+                    radius,
+                    Optional.ofNullable(EventSort.convert(sort)).orElse(EventSort.UNSORTED),
+                    after != null ? 0 : from,
+                    size,
+                    after,
+                    total);
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package ru.practicum.ewmservice.service;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.querydsl.QSort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.client.ViewsCache;
 import ru.practicum.ewmservice.customException.ValidationConflictException;
 import ru.practicum.ewmservice.customException.ValidationDataException;
 import ru.practicum.ewmservice.customException.ValidationForbiddenException;
@@ -17,11 +20,13 @@ import ru.practicum.ewmservice.mapper.EventMapper;
 import ru.practicum.ewmservice.mapper.RequestMapper;
 import ru.practicum.ewmservice.model.Category;
 import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventShortView;
 import ru.practicum.ewmservice.model.EventSort;
 import ru.practicum.ewmservice.model.EventState;
 import ru.practicum.ewmservice.model.QEvent;
 import ru.practicum.ewmservice.model.Request;
 import ru.practicum.ewmservice.model.RequestState;
+import ru.practicum.ewmservice.model.RequestStateView;
 import ru.practicum.ewmservice.model.User;
 import ru.practicum.ewmservice.model.dto.AdminUpdateEventRequest;
 import ru.practicum.ewmservice.model.dto.EndpointHit;
@@ -29,17 +34,26 @@ import ru.practicum.ewmservice.model.dto.EventFullDto;
 import ru.practicum.ewmservice.model.dto.EventShortDto;
 import ru.practicum.ewmservice.model.dto.NewEventDto;
 import ru.practicum.ewmservice.model.dto.ParticipationRequestDto;
+import ru.practicum.ewmservice.model.dto.RequestStatusUpdateRequest;
+import ru.practicum.ewmservice.model.dto.RequestStatusUpdateResult;
 import ru.practicum.ewmservice.model.dto.UpdateEventRequest;
+import ru.practicum.ewmservice.storage.EventGeoSearch;
 import ru.practicum.ewmservice.storage.EventRepository;
+import ru.practicum.ewmservice.storage.EventShortViewRepository;
+import ru.practicum.ewmservice.storage.EventTextSearch;
 import ru.practicum.ewmservice.storage.RequestRepository;
+import ru.practicum.ewmservice.storage.TotalCounter;
+import ru.practicum.ewmservice.util.CursorPage;
 import ru.practicum.ewmservice.util.CustomPageRequest;
+import ru.practicum.ewmservice.util.PageCursor;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -53,11 +67,18 @@ import static ru.practicum.ewmservice.util.Constants.DATE_PATTERN;
 @Transactional(readOnly = true)
 public class EventService {
     private final EventRepository eventRepository;
+    private final EventShortViewRepository eventShortViewRepository;
     private final UserService userService;
     private final CategoryService categoryService;
     private final RequestService requestService;
     private final RequestRepository requestRepository;
     private final StatsClient statsClient;
+    private final ViewsCache viewsCache;
+    private final EventTextSearch eventTextSearch;
+    private final EventGeoSearch eventGeoSearch;
+    private final TotalCounter totalCounter;
+    private final EventListingCache eventListingCache;
+    private final EventViewsSyncService eventViewsSyncService;
     @Value("${time-before-event}")
     int tbe;
     @Value("${time-before-event.admin}")
@@ -65,25 +86,49 @@ public class EventService {
     @Value("${app-name}")
     String appName;
 
-    public List<EventFullDto> findAll(String text,
+    public CursorPage<EventFullDto> findAll(String text,
                                       List<Long> categories,
                                       Boolean paid,
                                       String rangeStart,
                                       String rangeEnd,
                                       Boolean onlyAvailable,
+                                      Double lat,
+                                      Double lon,
+                                      Double radius,
                                       String sortStr,
                                       Integer from,
                                       Integer size,
+                                      String after,
+                                      boolean total,
                                       String uri,
                                       String ip) {
+        EventListingCache.Key key = EventListingCache.Key.of(text, categories, paid, rangeStart, rangeEnd,
+                onlyAvailable, lat, lon, radius, sortStr, from, size, after, total);
+        CursorPage<EventFullDto> page = eventListingCache.get(key, () -> loadAll(text, categories, paid,
+                rangeStart, rangeEnd, onlyAvailable, lat, lon, radius, sortStr, from, size, after, total));
+        statsClient.sendHit(new EndpointHit(appName, uri, ip));
+        return page;
+    }
+
+    private CursorPage<EventFullDto> loadAll(String text,
+                                             List<Long> categories,
+                                             Boolean paid,
+                                             String rangeStart,
+                                             String rangeEnd,
+                                             Boolean onlyAvailable,
+                                             Double lat,
+                                             Double lon,
+                                             Double radius,
+                                             String sortStr,
+                                             Integer from,
+                                             Integer size,
+                                             String after,
+                                             boolean total) {
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern(DATE_PATTERN);
         QEvent qEvent = QEvent.event;
-        BooleanBuilder findCriteria = new BooleanBuilder();
+        // Публичный поиск - только по опубликованным событиям.
+        BooleanBuilder findCriteria = new BooleanBuilder(qEvent.state.eq(EventState.PUBLISHED));
 
-        if (text != null) {
-            findCriteria.and(qEvent.annotation.containsIgnoreCase(text)
-                    .or(qEvent.description.containsIgnoreCase(text)));
-        }
         if (categories != null && categories.size() > 0)
             findCriteria.and(qEvent.category.id.in(categories));
         if (paid != null)
@@ -109,34 +154,59 @@ public class EventService {
             findCriteria.and(qEvent.eventDate.before(end));
         }
         if (Boolean.TRUE.equals(onlyAvailable))
-            findCriteria.and(qEvent.participantLimit.gt(qEvent.confirmedMembers.size()));
-        statsClient.sendHit(new EndpointHit(appName, uri, ip));
-        List<EventFullDto> result;
-        Map<Long, Long> views;
-        Page<Event> events;
-        Pageable pageable;
-        switch (Optional.ofNullable(EventSort.convert(sortStr)).orElse(EventSort.UNSORTED)) {
+            findCriteria.and(qEvent.participantLimit.eq(0)
+                    .or(qEvent.participantLimit.gt(qEvent.confirmedRequests)));
+        addLocationCriteria(findCriteria, lat, lon, radius);
+        EventSort eventSort = Optional.ofNullable(EventSort.convert(sortStr)).orElse(EventSort.UNSORTED);
+        // Несортированный поиск по text упорядочен по релевантности, курсор к такому порядку не привязать.
+        boolean byRelevance = text != null && eventSort == EventSort.UNSORTED;
+        // Расстояние вычисляется от точки запроса, курсор к нему тоже не привязать.
+        boolean byDistance = eventSort == EventSort.DISTANCE;
+        PageCursor.Kind cursorKind;
+        Sort sort;
+        switch (eventSort) {
             case EVENT_DATE:
-                Sort sort = Sort.by("eventDate");
-                pageable = CustomPageRequest.of(from, size, sort);
-                events = eventRepository.findAll(findCriteria, pageable);
-                views = statsClient.getStats(getIds(events));
-                result = toEventFullDto(events, views);
+                cursorKind = PageCursor.Kind.EVENT_DATE;
+                sort = Sort.by("eventDate").and(Sort.by("id"));
                 break;
             case VIEWS:
-                Iterable<Event> eventIterable = eventRepository.findAll(findCriteria);
-                views = statsClient.getStats(getIds(eventIterable));
-                result = toEventFullDto(eventIterable, views).stream()
-                        .sorted(Comparator.comparing(EventFullDto::getViews))
-                        .collect(Collectors.toList());
+                // Сортировка по просмотрам из последней синхронизации (events.views), в ответе - актуальные.
+                cursorKind = PageCursor.Kind.VIEWS;
+                sort = Sort.by("views").and(Sort.by("id"));
+                break;
+            case DISTANCE:
+                if (lat == null || lon == null)
+                    throw new ValidationDataException("Sort by DISTANCE requires lat and lon.");
+                cursorKind = PageCursor.Kind.ID;
+                sort = new QSort(eventGeoSearch.distance(lat, lon).asc(), qEvent.id.asc());
                 break;
-            default: //Несортированный
-                pageable = CustomPageRequest.of(from, size);
-                events = eventRepository.findAll(findCriteria, pageable);
-                views = statsClient.getStats(getIds(events));
-                result = toEventFullDto(events, views);
+            default: //Несортированный: по ID, с text - по релевантности
+                cursorKind = PageCursor.Kind.ID;
+                sort = byRelevance ? Sort.unsorted() : Sort.by("id");
         }
-        return result;
+        PageCursor cursor = null;
+        if (after != null) {
+            if (byRelevance)
+                throw new ValidationDataException("Cursor is not supported for search by relevance, sort required.");
+            if (byDistance)
+                throw new ValidationDataException("Cursor is not supported for sort by DISTANCE.");
+            cursor = PageCursor.decode(after, cursorKind);
+        }
+        Long totalCount = null;
+        if (total)
+            totalCount = text != null
+                    ? eventTextSearch.count(text, findCriteria)
+                    : totalCounter.count(eventRepository, findCriteria, "events");
+        if (cursor != null)
+            findCriteria.and(afterCursor(cursor));
+        Pageable pageable = CustomPageRequest.of(cursor != null ? 0 : from, size, sort);
+        Slice<Event> events = text != null
+                ? eventTextSearch.search(text, findCriteria, pageable)
+                : eventRepository.findSlice(findCriteria, pageable, Event.WITH_CATEGORY_AND_INITIATOR);
+        Map<Long, Long> views = viewsCache.getViews(getIds(events));
+        return new CursorPage<>(toEventFullDto(events, views),
+                byRelevance || byDistance ? null : PageCursor.next(events, e -> cursorOf(e, cursorKind)),
+                totalCount);
     }
 
     public EventFullDto findById(Long eventId, String uri, String ip) {
@@ -144,17 +214,20 @@ public class EventService {
         if (event.getState() != EventState.PUBLISHED)
             throw new ValidationConflictException(String
                     .format("Event id=%s not published", eventId));
-        Map<Long, Long> views = statsClient.getStats(Collections.singletonList(eventId));
+        Map<Long, Long> views = viewsCache.getViews(Collections.singletonList(eventId));
         statsClient.sendHit(new EndpointHit(appName, uri, ip));
+        eventViewsSyncService.markViewed(eventId);
         return toEventFullDto(event, views);
     }
 
     public List<EventShortDto> findAllPrivate(Long userId, Integer from, Integer size) {
         userService.getUserById(userId);
         Pageable pageable = CustomPageRequest.of(from, size);
-        List<Event> events = eventRepository.findByInitiator_Id(userId, pageable);
-        Map<Long, Long> views = statsClient.getStats(getIds(events));
-        return EventMapper.toEventShortDto(events, views);
+        List<EventShortView> events = eventShortViewRepository.findByInitiator(userId, pageable);
+        Map<Long, Long> views = viewsCache.getViews(events.stream()
+                .map(EventShortView::getId)
+                .collect(Collectors.toList()));
+        return EventMapper.toEventShortDtoFromViews(events, views);
     }
 
     @Transactional
@@ -189,7 +262,9 @@ public class EventService {
             event.setState(EventState.PENDING);
 
         event = eventRepository.save(event);
-        Map<Long, Long> views = statsClient.getStats(Collections.singletonList(event.getId()));
+        eventListingCache.invalidate();
+        eventTextSearch.index(event);
+        Map<Long, Long> views = viewsCache.getViews(Collections.singletonList(event.getId()));
         return toEventFullDto(event, views);
     }
 
@@ -205,7 +280,9 @@ public class EventService {
         event.setInitiator(initiator);
         event.setState(EventState.PENDING);
         event = eventRepository.save(event);
-        Map<Long, Long> views = statsClient.getStats(Collections.singletonList(event.getId()));
+        eventListingCache.invalidate();
+        eventTextSearch.index(event);
+        Map<Long, Long> views = viewsCache.getViews(Collections.singletonList(event.getId()));
         return toEventFullDto(event, views);
     }
 
@@ -213,7 +290,7 @@ public class EventService {
         userService.getUserById(userId);
         Event event = getEventById(eventId);
         checkInitiator(event, userId);
-        Map<Long, Long> views = statsClient.getStats(Collections.singletonList(eventId));
+        Map<Long, Long> views = viewsCache.getViews(Collections.singletonList(eventId));
         return toEventFullDto(event, views);
     }
 
@@ -227,7 +304,8 @@ public class EventService {
                     .format("Event id=%s in status=%s. Cancel is not possible.", eventId, event.getState()));
         event.setState(EventState.CANCELED);
         event = eventRepository.save(event);
-        Map<Long, Long> views = statsClient.getStats(Collections.singletonList(eventId));
+        eventListingCache.invalidate();
+        Map<Long, Long> views = viewsCache.getViews(Collections.singletonList(eventId));
         return toEventFullDto(event, views);
     }
 
@@ -243,44 +321,159 @@ public class EventService {
     @Transactional
     public ParticipationRequestDto confirmRequestByInitiator(Long userId, Long eventId, Long reqId) {
         userService.getUserById(userId);
-        Event event = getEventById(eventId);
+        Event event = getEventForUpdate(eventId);
         checkInitiator(event, userId);
-        Request req = requestService.getRequestById(reqId);
+        Request req = getEventRequest(eventId, reqId);
         if (req.getState() != RequestState.PENDING)
             throw new ValidationConflictException(String
                     .format("Request id=%s in status=%s. Confirm is not possible.", reqId, req.getState()));
-        long confirmedRequest = event.getConfirmedMembers().size();
-        if (event.getParticipantLimit() > 0 && confirmedRequest >= event.getParticipantLimit())
+        // Порядок на всех путях один: событие, его счётчик, затем заявка. Строка события заблокирована
+        // до конца транзакции, поэтому одновременные изменения заявок события идут по одному.
+        if (eventRepository.incrementConfirmedRequests(eventId) == 0)
             throw new ValidationConflictException("The maximum number of participants has been reached.");
+        if (requestRepository.updateState(reqId, RequestState.PENDING, RequestState.CONFIRMED) == 0)
+            throw new ValidationConflictException(String
+                    .format("Request id=%s is no longer pending. Confirm is not possible.", reqId));
+        eventListingCache.invalidate();
         req.setState(RequestState.CONFIRMED);
-        req = requestRepository.save(req);
         // Если достигнут лимит участников, все неподтвержденные заявки отклоняем.
-        if (event.getParticipantLimit() > 0 && ++confirmedRequest == event.getParticipantLimit()) {
-            List<Request> requestsToReject = requestRepository.findByEvent_IdAndState(eventId, RequestState.PENDING);
-            requestsToReject.forEach(r -> r.setState(RequestState.REJECTED));
-            requestRepository.saveAll(requestsToReject);
-        }
+        if (event.getParticipantLimit() > 0
+                && eventRepository.getConfirmedRequests(eventId) >= event.getParticipantLimit())
+            requestRepository.updateStateByEvent(eventId, RequestState.PENDING, RequestState.REJECTED);
         return RequestMapper.toParticipationRequestDto(req);
     }
 
     @Transactional
     public ParticipationRequestDto rejectRequestByInitiator(Long userId, Long eventId, Long reqId) {
         userService.getUserById(userId);
-        getEventById(eventId);
-        Request req = requestService.getRequestById(reqId);
+        Event event = getEventForUpdate(eventId);
+        checkInitiator(event, userId);
+        Request req = getEventRequest(eventId, reqId);
         if (req.getState() == RequestState.REJECTED)
             throw new ValidationConflictException(String
                     .format("Request id=%s already in status=%s. Reject is not possible.", reqId, req.getState()));
+        // Как при подтверждении: сначала счётчик события, затем заявка. Если статус заявки уже сменился
+        // (одновременная отмена), транзакция откатывается вместе с уменьшением счётчика.
+        if (req.getState() == RequestState.CONFIRMED)
+            eventRepository.decrementConfirmedRequests(eventId);
+        if (requestRepository.updateState(reqId, req.getState(), RequestState.REJECTED) == 0)
+            throw new ValidationConflictException(String
+                    .format("Request id=%s changed concurrently. Reject is not possible.", reqId));
+        if (req.getState() == RequestState.CONFIRMED)
+            eventListingCache.invalidate();
         req.setState(RequestState.REJECTED);
-        req = requestRepository.save(req);
         return RequestMapper.toParticipationRequestDto(req);
     }
 
-    public List<EventFullDto> findByAdmin(List<Long> users, List<String> states, List<Long> categories,
-                                          String rangeStart, String rangeEnd, Integer from, Integer size) {
+    /**
+     * Пакетное подтверждение или отклонение заявок на событие. Заявки меняются запросами по множеству ID
+     * в одной транзакции под блокировкой строки события. Подтверждаются заявки в порядке списка,
+     * пока есть места; при достижении лимита все неподтвержденные заявки события отклоняются.
+     *
+     * @return Результат по каждой заявке в порядке списка, без повторов.
+     */
+    @Transactional
+    public List<RequestStatusUpdateResult> updateRequestsStatus(Long userId, Long eventId,
+                                                                RequestStatusUpdateRequest updateRequest) {
+        RequestState target = RequestState.convert(updateRequest.getStatus());
+        if (target != RequestState.CONFIRMED && target != RequestState.REJECTED)
+            throw new ValidationDataException(String
+                    .format("Invalid status=%s. CONFIRMED or REJECTED expected.", updateRequest.getStatus()));
+        userService.getUserById(userId);
+        Event event = getEventForUpdate(eventId);
+        checkInitiator(event, userId);
+        List<Long> ids = updateRequest.getRequestIds().stream()
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, RequestState> before = getRequestStates(eventId, ids);
+        Map<Long, String> reasons = new HashMap<>();
+        int changed = target == RequestState.CONFIRMED
+                ? confirmRequests(event, ids, before, reasons)
+                : rejectRequests(eventId, ids, before, reasons);
+        if (changed > 0)
+            eventListingCache.invalidate();
+        Map<Long, RequestState> after = getRequestStates(eventId, ids);
+        return ids.stream()
+                .map(id -> {
+                    RequestState state = after.get(id);
+                    boolean updated = state == target && before.get(id) != target;
+                    return RequestStatusUpdateResult.builder()
+                            .requestId(id)
+                            .status(state == null ? null : state.toString())
+                            .updated(updated)
+                            .reason(updated ? null : reasons.getOrDefault(id, String
+                                    .format("Request id=%s changed concurrently.", id)))
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    private int confirmRequests(Event event, List<Long> ids, Map<Long, RequestState> states,
+                                Map<Long, String> reasons) {
+        Long eventId = event.getId();
+        List<Long> pending = new ArrayList<>();
+        for (Long id : ids) {
+            RequestState state = states.get(id);
+            if (state == RequestState.PENDING)
+                pending.add(id);
+            else
+                reasons.put(id, state == null
+                        ? String.format("Request with id=%s not found.", id)
+                        : String.format("Request id=%s in status=%s. Confirm is not possible.", id, state));
+        }
+        int limit = event.getParticipantLimit();
+        // Счётчик читается после блокировки строки события и до конца транзакции не изменится.
+        long confirmed = eventRepository.getConfirmedRequests(eventId);
+        int seats = limit == 0 ? pending.size() : (int) Math.max(0, Math.min(pending.size(), limit - confirmed));
+        pending.subList(seats, pending.size())
+                .forEach(id -> reasons.put(id, "The maximum number of participants has been reached."));
+        int changed = 0;
+        if (seats > 0) {
+            changed = requestRepository.updateStates(pending.subList(0, seats),
+                    RequestState.PENDING, RequestState.CONFIRMED);
+            eventRepository.addConfirmedRequests(eventId, changed);
+        }
+        // Если достигнут лимит участников, все неподтвержденные заявки отклоняем.
+        if (limit > 0 && confirmed + changed >= limit)
+            changed += requestRepository.updateStateByEvent(eventId, RequestState.PENDING, RequestState.REJECTED);
+        return changed;
+    }
+
+    private int rejectRequests(Long eventId, List<Long> ids, Map<Long, RequestState> states,
+                               Map<Long, String> reasons) {
+        Map<RequestState, List<Long>> byState = new EnumMap<>(RequestState.class);
+        for (Long id : ids) {
+            RequestState state = states.get(id);
+            if (state == null)
+                reasons.put(id, String.format("Request with id=%s not found.", id));
+            else if (state == RequestState.REJECTED)
+                reasons.put(id, String.format("Request id=%s already in status=%s. Reject is not possible.",
+                        id, state));
+            else
+                byState.computeIfAbsent(state, s -> new ArrayList<>()).add(id);
+        }
+        int changed = 0;
+        for (Map.Entry<RequestState, List<Long>> entry : byState.entrySet()) {
+            int rejected = requestRepository.updateStates(entry.getValue(), entry.getKey(), RequestState.REJECTED);
+            if (entry.getKey() == RequestState.CONFIRMED)
+                eventRepository.addConfirmedRequests(eventId, -rejected);
+            changed += rejected;
+        }
+        return changed;
+    }
+
+    private Map<Long, RequestState> getRequestStates(Long eventId, List<Long> ids) {
+        return requestRepository.findStates(eventId, ids).stream()
+                .collect(Collectors.toMap(RequestStateView::getId, RequestStateView::getState));
+    }
+
+    public CursorPage<EventFullDto> findByAdmin(List<Long> users, List<String> states, List<Long> categories,
+                                                String rangeStart, String rangeEnd, Double lat, Double lon,
+                                                Double radius, Integer from, Integer size,
+                                                String after, boolean total) {
 
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern(DATE_PATTERN);
-        Pageable pageable = CustomPageRequest.of(from, size);
+        Pageable pageable = CustomPageRequest.of(after != null ? 0 : from, size, Sort.by("id"));
         QEvent qEvent = QEvent.event;
 
         BooleanBuilder findCriteria = new BooleanBuilder();
@@ -311,9 +504,15 @@ public class EventService {
             }
             findCriteria.and(qEvent.eventDate.before(end));
         }
-        Page<Event> events = eventRepository.findAll(findCriteria, pageable);
-        Map<Long, Long> views = statsClient.getStats(getIds(events));
-        return toEventFullDto(events, views);
+        addLocationCriteria(findCriteria, lat, lon, radius);
+        Long totalCount = total ? totalCounter.count(eventRepository, findCriteria, "events") : null;
+        if (after != null)
+            findCriteria.and(afterCursor(PageCursor.decode(after, PageCursor.Kind.ID)));
+        Slice<Event> events = eventRepository.findSlice(findCriteria, pageable, Event.WITH_CATEGORY_AND_INITIATOR);
+        Map<Long, Long> views = viewsCache.getViews(getIds(events));
+        return new CursorPage<>(toEventFullDto(events, views),
+                PageCursor.next(events, e -> cursorOf(e, PageCursor.Kind.ID)),
+                totalCount);
     }
 
     @Transactional
@@ -340,7 +539,9 @@ public class EventService {
         if (updateEventDto.getTitle() != null)
             event.setTitle(updateEventDto.getTitle());
         event = eventRepository.save(event);
-        Map<Long, Long> views = statsClient.getStats(Collections.singletonList(eventId));
+        eventListingCache.invalidate();
+        eventTextSearch.index(event);
+        Map<Long, Long> views = viewsCache.getViews(Collections.singletonList(eventId));
         return toEventFullDto(event, views);
     }
 
@@ -356,7 +557,8 @@ public class EventService {
         event.setState(EventState.PUBLISHED);
         event.setPublishedOn(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
         event = eventRepository.save(event);
-        Map<Long, Long> views = statsClient.getStats(Collections.singletonList(eventId));
+        eventListingCache.invalidate();
+        Map<Long, Long> views = viewsCache.getViews(Collections.singletonList(eventId));
         return toEventFullDto(event, views);
     }
 
@@ -368,16 +570,81 @@ public class EventService {
                     .format("Event id=%s in status=%s. Reject is not possible.", eventId, event.getState()));
         event.setState(EventState.CANCELED);
         event = eventRepository.save(event);
-        Map<Long, Long> views = statsClient.getStats(Collections.singletonList(eventId));
+        eventListingCache.invalidate();
+        Map<Long, Long> views = viewsCache.getViews(Collections.singletonList(eventId));
         return toEventFullDto(event, views);
     }
 
+    /**
+     * Отбор по радиусу вокруг точки. Точка без радиуса допустима - для сортировки по расстоянию.
+     */
+    private void addLocationCriteria(BooleanBuilder findCriteria, Double lat, Double lon, Double radius) {
+        if (lat == null && lon == null && radius == null)
+            return;
+        if (lat == null || lon == null)
+            throw new ValidationDataException("Parameters lat and lon must be set together.");
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180)
+            throw new ValidationDataException(String.format("Invalid location lat=%s, lon=%s", lat, lon));
+        if (radius != null)
+            findCriteria.and(eventGeoSearch.within(lat, lon, radius));
+    }
+
+    /**
+     * Условие keyset-пагинации: записи строго после курсора в порядке (ключ сортировки, id).
+     */
+    private Predicate afterCursor(PageCursor cursor) {
+        QEvent qEvent = QEvent.event;
+        switch (cursor.getKind()) {
+            case EVENT_DATE:
+                LocalDateTime eventDate = cursor.getEventDate();
+                return qEvent.eventDate.gt(eventDate)
+                        .or(qEvent.eventDate.eq(eventDate).and(qEvent.id.gt(cursor.getId())));
+            case VIEWS:
+                long views = cursor.getViews();
+                return qEvent.views.gt(views)
+                        .or(qEvent.views.eq(views).and(qEvent.id.gt(cursor.getId())));
+            default:
+                return qEvent.id.gt(cursor.getId());
+        }
+    }
+
+    private PageCursor cursorOf(Event event, PageCursor.Kind kind) {
+        switch (kind) {
+            case EVENT_DATE:
+                return PageCursor.ofEventDate(event.getEventDate(), event.getId());
+            case VIEWS:
+                return PageCursor.ofViews(event.getViews(), event.getId());
+            default:
+                return PageCursor.ofId(event.getId());
+        }
+    }
+
     Event getEventById(Long eventId) {
         return eventRepository.findById(eventId)
                 .orElseThrow(() -> new ValidationNotFoundException(String
                         .format("Event with id=%s not found.", eventId)));
     }
 
+    /**
+     * Событие с блокировкой строки до конца транзакции, см. EventRepository.findByIdForUpdate.
+     */
+    private Event getEventForUpdate(Long eventId) {
+        return eventRepository.findByIdForUpdate(eventId)
+                .orElseThrow(() -> new ValidationNotFoundException(String
+                        .format("Event with id=%s not found.", eventId)));
+    }
+
+    /**
+     * Заявка на событие eventId; заявка на другое событие считается не найденной, как в updateRequestsStatus.
+     */
+    private Request getEventRequest(Long eventId, Long reqId) {
+        Request req = requestService.getRequestById(reqId);
+        if (!eventId.equals(req.getEvent().getId()))
+            throw new ValidationNotFoundException(String
+                    .format("Request with id=%s not found for event id=%s.", reqId, eventId));
+        return req;
+    }
+
     private void checkInitiator(Event event, long userId) {
         if (userId != event.getInitiator().getId())
             throw new ValidationForbiddenException(String
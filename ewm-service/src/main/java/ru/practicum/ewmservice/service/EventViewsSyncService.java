@@ -0,0 +1,165 @@
+package ru.practicum.ewmservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.storage.EventViewsRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Фоновая синхронизация колонки events.views с сервером статистики.
+ * По ней сортировка sort=VIEWS выполняется в БД с пагинацией. Значения отстают от сервера статистики
+ * не более чем на интервал синхронизации плюс её длительность, фактическое отставание видно в метрике
+ * ewm.views.sync.lag.
+ * Просмотры меняются только от хитов GET /events/{id}, поэтому каждый раз сверяются лишь события,
+ * просмотренные через этот экземпляр с прошлой синхронизации (хит доходит до сервера статистики
+ * с задержкой, так что событие сверяется ещё и в следующий раз). Все опубликованные события обходятся
+ * при запуске и раз в stats-server.views-sync.full-interval-ms - это подбирает хиты, доставленные позже.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventViewsSyncService {
+    private final EventViewsRepository eventViewsRepository;
+    private final StatsClient statsClient;
+    private final MeterRegistry meterRegistry;
+    @Value("${stats-server.views-sync.interval-ms}")
+    long intervalMs;
+    @Value("${stats-server.views-sync.chunk-size}")
+    int chunkSize;
+    @Value("${stats-server.views-sync.full-interval-ms}")
+    long fullIntervalMs;
+
+    // Начало последней успешной синхронизации: сохранённые просмотры не старше этого момента.
+    private volatile long lastSyncedAt;
+    // Начало последнего успешного обхода всех опубликованных событий, 0 - обхода ещё не было.
+    private long lastFullSyncAt;
+    // События, просмотренные после начала последней синхронизации.
+    private final Set<Long> viewed = ConcurrentHashMap.newKeySet();
+    // События, просмотренные перед последней синхронизацией: их хиты могли ещё не дойти до сервера статистики.
+    private Set<Long> settling = Set.of();
+    private Timer syncTimer;
+    private Counter updatedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    void init() {
+        lastSyncedAt = System.currentTimeMillis();
+        Gauge.builder("ewm.views.sync.lag", this, s -> (System.currentTimeMillis() - s.lastSyncedAt) / 1000.0)
+                .description("Age of persisted event views, seconds")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("ewm.views.sync.interval", this, s -> s.intervalMs / 1000.0)
+                .description("Configured freshness window of persisted event views, seconds")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        syncTimer = Timer.builder("ewm.views.sync.duration")
+                .description("Time to synchronize views of viewed or all published events")
+                .register(meterRegistry);
+        updatedCounter = meterRegistry.counter("ewm.views.sync.updated");
+        failedCounter = meterRegistry.counter("ewm.views.sync.failed");
+    }
+
+    /**
+     * Отметка о просмотре события: его просмотры сверятся при ближайшей синхронизации.
+     */
+    public void markViewed(Long eventId) {
+        viewed.add(eventId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${stats-server.views-sync.interval-ms}",
+            initialDelayString = "${stats-server.views-sync.interval-ms}")
+    public synchronized void sync() {
+        long startedAt = System.currentTimeMillis();
+        boolean full = startedAt - lastFullSyncAt >= fullIntervalMs;
+        Set<Long> fresh = new HashSet<>();
+        for (Iterator<Long> it = viewed.iterator(); it.hasNext(); ) {
+            fresh.add(it.next());
+            it.remove();
+        }
+        try {
+            int updated = syncTimer.recordCallable(() -> full ? syncAll() : syncViewed(fresh));
+            settling = fresh;
+            if (full)
+                lastFullSyncAt = startedAt;
+            lastSyncedAt = startedAt;
+            updatedCounter.increment(updated);
+            log.debug("Views synchronized, {} event(s) updated.", updated);
+        } catch (Exception e) {
+            viewed.addAll(fresh);
+            failedCounter.increment();
+            log.warn("Views synchronization failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Обход опубликованных событий порциями по ID.
+     */
+    private int syncAll() {
+        int updated = 0;
+        long afterId = 0;
+        Map<Long, Long> stored = eventViewsRepository.findPublished(afterId, chunkSize);
+        while (!stored.isEmpty()) {
+            updated += syncChunk(stored);
+            if (stored.size() < chunkSize)
+                break;
+            afterId = stored.keySet().stream().mapToLong(Long::longValue).max().orElseThrow();
+            stored = eventViewsRepository.findPublished(afterId, chunkSize);
+        }
+        return updated;
+    }
+
+    /**
+     * Сверка только просмотренных событий: новых и оставшихся с прошлой синхронизации.
+     */
+    private int syncViewed(Set<Long> fresh) {
+        Set<Long> ids = new HashSet<>(settling);
+        ids.addAll(fresh);
+        List<Long> list = new ArrayList<>(ids);
+        int updated = 0;
+        for (int from = 0; from < list.size(); from += chunkSize)
+            updated += syncChunk(eventViewsRepository.findPublished(
+                    list.subList(from, Math.min(from + chunkSize, list.size()))));
+        return updated;
+    }
+
+    /**
+     * Сверка порции событий с сервером статистики. Пишутся только изменившиеся значения.
+     *
+     * @param stored Мапа (id события, сохранённое количество просмотров).
+     * @return Количество обновлённых событий.
+     */
+    private int syncChunk(Map<Long, Long> stored) {
+        if (stored.isEmpty())
+            return 0;
+        Map<Long, Long> actual = statsClient.getStats(new ArrayList<>(stored.keySet()));
+        Map<Long, Long> changed = new HashMap<>();
+        stored.forEach((id, views) -> {
+            long current = actual.getOrDefault(id, 0L);
+            if (current != views)
+                changed.put(id, current);
+        });
+        if (!changed.isEmpty())
+            eventViewsRepository.updateViews(changed);
+        return changed.size();
+    }
+}
@@ -29,6 +29,7 @@ import static ru.practicum.ewmservice.mapper.RequestMapper.toParticipationReques
 public class RequestService {
     private final RequestRepository requestRepository;
     private final UserService userService;
+    private final EventListingCache eventListingCache;
     private final EventRepository eventRepository; //EventService подключать нельзя из-за цикличной зависимости.
 
     public List<ParticipationRequestDto> findByRequesterId(Long userId) {
@@ -49,17 +50,26 @@ public class RequestService {
         if (event.getState() != EventState.PUBLISHED)
             throw new ValidationConflictException(String
                     .format("Requests are only accepted for published events. EventState=%s", event.getState()));
-        if (event.getParticipantLimit() > 0 && event.getConfirmedMembers().size() >= event.getParticipantLimit())
+        RequestState state = event.getParticipantLimit() > 0 && event.getRequestModeration() ?
+                RequestState.PENDING : RequestState.CONFIRMED;
+        if (event.getParticipantLimit() > 0 && event.getConfirmedRequests() >= event.getParticipantLimit())
             throw new ValidationConflictException("The maximum number of participants has been reached.");
         Request request = Request.builder()
                 .requester(requester)
                 .event(event)
                 .created(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS))
-                .state(event.getParticipantLimit() > 0 && event.getRequestModeration() ?
-                        RequestState.PENDING : RequestState.CONFIRMED)
+                .state(state)
                 .build();
         // Контроль уникальности в БД. Обработка исключения в ErrorHandler.
-        request = requestRepository.save(request);
+        request = requestRepository.saveAndFlush(request);
+        // Место занимается последним: строка события заблокирована от этого обновления до коммита,
+        // и при наплыве заявок на одно событие блокировка держится как можно меньше.
+        // Если мест уже нет, транзакция откатывается вместе с заявкой.
+        if (state == RequestState.CONFIRMED) {
+            if (eventRepository.incrementConfirmedRequests(eventId) == 0)
+                throw new ValidationConflictException("The maximum number of participants has been reached.");
+            eventListingCache.invalidate();
+        }
         return toParticipationRequestDto(request);
     }
 
@@ -70,8 +80,18 @@ public class RequestService {
         if (!userId.equals(request.getRequester().getId()))
             throw new ValidationForbiddenException(String
                     .format("User id=%s not owner of request id=%s.", userId, requestId));
+        // Как при подтверждении и отклонении: строка события, её счётчик, затем заявка. Если статус заявки
+        // уже сменился, транзакция откатывается вместе с уменьшением счётчика.
+        Long eventId = request.getEvent().getId();
+        eventRepository.findByIdForUpdate(eventId);
+        if (request.getState() == RequestState.CONFIRMED)
+            eventRepository.decrementConfirmedRequests(eventId);
+        if (requestRepository.updateState(requestId, request.getState(), RequestState.CANCELED) == 0)
+            throw new ValidationConflictException(String
+                    .format("Request id=%s changed concurrently. Cancel is not possible.", requestId));
+        if (request.getState() == RequestState.CONFIRMED)
+            eventListingCache.invalidate();
         request.setState(RequestState.CANCELED);
-        request = requestRepository.save(request);
         return toParticipationRequestDto(request);
     }
 
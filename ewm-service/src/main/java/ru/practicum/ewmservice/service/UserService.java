@@ -3,6 +3,8 @@ package ru.practicum.ewmservice.service;
 import com.querydsl.core.BooleanBuilder;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewmservice.customException.ValidationNotFoundException;
@@ -11,8 +13,11 @@ import ru.practicum.ewmservice.model.QUser;
 import ru.practicum.ewmservice.model.User;
 import ru.practicum.ewmservice.model.dto.NewUserRequest;
 import ru.practicum.ewmservice.model.dto.UserDto;
+import ru.practicum.ewmservice.storage.TotalCounter;
 import ru.practicum.ewmservice.storage.UserRepository;
+import ru.practicum.ewmservice.util.CursorPage;
 import ru.practicum.ewmservice.util.CustomPageRequest;
+import ru.practicum.ewmservice.util.PageCursor;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -22,16 +27,24 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class UserService {
     private final UserRepository userRepository;
+    private final TotalCounter totalCounter;
 
-    public List<UserDto> find(List<Long> ids, Integer from, Integer size) {
-        Pageable pageable = CustomPageRequest.of(from, size);
+    public CursorPage<UserDto> find(List<Long> ids, Integer from, Integer size, String after, boolean total) {
         QUser qUser = QUser.user;
         BooleanBuilder findCriteria = new BooleanBuilder();
         if (ids != null && ids.size() > 0)
             findCriteria.and(qUser.id.in(ids));
-        return userRepository.findAll(findCriteria, pageable).stream()
+        Long totalCount = total ? totalCounter.count(userRepository, findCriteria, "users") : null;
+        // С курсором страница начинается после него, from не используется.
+        if (after != null)
+            findCriteria.and(qUser.id.gt(PageCursor.decode(after, PageCursor.Kind.ID).getId()));
+        Pageable pageable = CustomPageRequest.of(after != null ? 0 : from, size, Sort.by("id"));
+        Slice<User> users = userRepository.findSlice(findCriteria, pageable);
+        return new CursorPage<>(users.stream()
                 .map(UserMapper::toUserDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()),
+                PageCursor.next(users, u -> PageCursor.ofId(u.getId())),
+                totalCount);
     }
 
     @Transactional
@@ -0,0 +1,51 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewmservice.model.QEvent;
+
+/**
+ * Поиск для H2: ограничивающий прямоугольник по индексу events (location_lat, location_lon)
+ * (schema-h2.sql), затем точное расстояние по формуле гаверсинусов.
+ */
+@Repository
+@ConditionalOnProperty(name = "spring.sql.init.platform", havingValue = "h2")
+public class BoundingBoxEventGeoSearch implements EventGeoSearch {
+
+    @Override
+    public Predicate within(double lat, double lon, double radiusKm) {
+        QEvent qEvent = QEvent.event;
+        double dLat = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+        double minLat = lat - dLat;
+        double maxLat = lat + dLat;
+        BooleanBuilder box = new BooleanBuilder(qEvent.locationLat.between(minLat, maxLat));
+        // У полюса круг захватывает все долготы.
+        if (minLat > -90 && maxLat < 90) {
+            double dLon = Math.toDegrees(Math.asin(Math.min(1, Math.sin(radiusKm / EARTH_RADIUS_KM)
+                    / Math.cos(Math.toRadians(lat)))));
+            double minLon = lon - dLon;
+            double maxLon = lon + dLon;
+            // Прямоугольник через 180-й меридиан - две полосы.
+            if (minLon < -180)
+                box.and(qEvent.locationLon.goe(minLon + 360).or(qEvent.locationLon.loe(maxLon)));
+            else if (maxLon > 180)
+                box.and(qEvent.locationLon.goe(minLon).or(qEvent.locationLon.loe(maxLon - 360)));
+            else
+                box.and(qEvent.locationLon.between(minLon, maxLon));
+        }
+        return box.and(distance(lat, lon).loe(radiusKm));
+    }
+
+    @Override
+    public NumberExpression<Double> distance(double lat, double lon) {
+        QEvent qEvent = QEvent.event;
+        return Expressions.numberTemplate(Double.class, "2 * {4} * asin(sqrt("
+                        + "power(sin(radians({0} - {2}) / 2), 2) + "
+                        + "cos(radians({0})) * cos(radians({2})) * power(sin(radians({1} - {3}) / 2), 2)))",
+                qEvent.locationLat, qEvent.locationLon, lat, lon, EARTH_RADIUS_KM);
+    }
+}
@@ -1,7 +1,11 @@
 package ru.practicum.ewmservice.storage;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import ru.practicum.ewmservice.model.Category;
 
-public interface CategoryRepository extends JpaRepository<Category, Long> {
+public interface CategoryRepository extends
+        JpaRepository<Category, Long>,
+        QuerydslPredicateExecutor<Category>,
+        SliceQuerydslExecutor<Category> {
 }
@@ -1,10 +1,18 @@
 package ru.practicum.ewmservice.storage;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import ru.practicum.ewmservice.model.Compilation;
 
+import java.util.Optional;
+
 public interface CompilationRepository extends
         JpaRepository<Compilation, Long>,
-        QuerydslPredicateExecutor<Compilation> {
+        QuerydslPredicateExecutor<Compilation>,
+        SliceQuerydslExecutor<Compilation> {
+
+    @Override
+    @EntityGraph(Compilation.WITH_EVENTS)
+    Optional<Compilation> findById(Long id);
 }
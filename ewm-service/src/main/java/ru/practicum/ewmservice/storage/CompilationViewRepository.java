@@ -0,0 +1,91 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewmservice.model.CompilationView;
+import ru.practicum.ewmservice.model.EventShortView;
+import ru.practicum.ewmservice.model.QCompilation;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static ru.practicum.ewmservice.storage.EventShortViewRepository.CATEGORY;
+import static ru.practicum.ewmservice.storage.EventShortViewRepository.EVENT;
+import static ru.practicum.ewmservice.storage.EventShortViewRepository.INITIATOR;
+import static ru.practicum.ewmservice.storage.EventShortViewRepository.PROJECTION;
+
+/**
+ * Подборки для ответов API проекцией: заголовок подборки и краткая информация о событиях
+ * (EventShortViewRepository), без управляемых сущностей.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CompilationViewRepository {
+    private static final QCompilation COMPILATION = QCompilation.compilation;
+
+    private final EntityManager entityManager;
+    private final EventShortViewRepository eventShortViewRepository;
+
+    /**
+     * Подборка с событиями одним запросом: по строке на событие, у пустой подборки - одна строка без события.
+     */
+    public Optional<CompilationView> findById(Long compId) {
+        List<Tuple> rows = new JPAQuery<>(entityManager)
+                .select(COMPILATION.title, COMPILATION.pinned, EVENT.id, PROJECTION)
+                .from(COMPILATION)
+                .leftJoin(COMPILATION.events, EVENT)
+                .leftJoin(EVENT.category, CATEGORY)
+                .leftJoin(EVENT.initiator, INITIATOR)
+                .where(COMPILATION.id.eq(compId))
+                .orderBy(EVENT.id.asc())
+                .fetch();
+        if (rows.isEmpty())
+            return Optional.empty();
+        List<EventShortView> events = rows.stream()
+                .filter(row -> row.get(EVENT.id) != null)
+                .map(row -> row.get(PROJECTION))
+                .collect(Collectors.toList());
+        Tuple first = rows.get(0);
+        return Optional.of(new CompilationView(compId, first.get(COMPILATION.title), first.get(COMPILATION.pinned),
+                events));
+    }
+
+    /**
+     * Страница подборок в порядке возрастания ID и события всех подборок страницы вторым запросом.
+     * Сортировка pageable не используется.
+     */
+    public Slice<CompilationView> findSlice(Predicate predicate, Pageable pageable) {
+        int size = pageable.getPageSize();
+        List<Tuple> rows = new JPAQuery<>(entityManager)
+                .select(COMPILATION.id, COMPILATION.title, COMPILATION.pinned)
+                .from(COMPILATION)
+                .where(predicate)
+                .orderBy(COMPILATION.id.asc())
+                .offset(pageable.getOffset())
+                .limit(size + 1L)
+                .fetch();
+        boolean hasNext = rows.size() > size;
+        if (hasNext)
+            rows = rows.subList(0, size);
+        Map<Long, List<EventShortView>> events = rows.isEmpty()
+                ? Collections.emptyMap()
+                : eventShortViewRepository.findByCompilations(rows.stream()
+                        .map(row -> row.get(COMPILATION.id))
+                        .collect(Collectors.toList()));
+        List<CompilationView> content = new ArrayList<>(rows.size());
+        rows.forEach(row -> content.add(new CompilationView(row.get(COMPILATION.id), row.get(COMPILATION.title),
+                row.get(COMPILATION.pinned), events.getOrDefault(row.get(COMPILATION.id), Collections.emptyList()))));
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+}
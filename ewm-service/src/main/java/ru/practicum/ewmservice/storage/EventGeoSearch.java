@@ -0,0 +1,23 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberExpression;
+
+/**
+ * Поиск событий по месту проведения (events.location_lat, events.location_lon).
+ * Реализация выбирается по spring.sql.init.platform: earthdistance с GiST-индексом в PostgreSQL
+ * или ограничивающий прямоугольник по B-tree индексу для H2. Расстояния - в километрах.
+ */
+public interface EventGeoSearch {
+    double EARTH_RADIUS_KM = 6371.0;
+
+    /**
+     * Условие: событие не дальше radiusKm от точки (lat, lon).
+     */
+    Predicate within(double lat, double lon, double radiusKm);
+
+    /**
+     * Расстояние от точки (lat, lon) до места события, для сортировки.
+     */
+    NumberExpression<Double> distance(double lat, double lon);
+}
@@ -1,13 +1,53 @@
 package ru.practicum.ewmservice.storage;
 
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.ewmservice.model.Event;
 
-import java.util.List;
+import javax.persistence.LockModeType;
+import java.util.Optional;
 
-public interface EventRepository extends JpaRepository<Event, Long>, QuerydslPredicateExecutor<Event> {
+public interface EventRepository extends
+        JpaRepository<Event, Long>,
+        QuerydslPredicateExecutor<Event>,
+        SliceQuerydslExecutor<Event> {
 
-    List<Event> findByInitiator_Id(Long initiator, Pageable pageable);
+    /**
+     * Занять место участника, если лимит участников ещё не достигнут.
+     *
+     * @return 1, если место занято, иначе 0.
+     */
+    @Modifying
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests + 1 WHERE e.id = :eventId " +
+            "AND (e.participantLimit = 0 OR e.confirmedRequests < e.participantLimit)")
+    int incrementConfirmedRequests(@Param("eventId") Long eventId);
+
+    @Modifying
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests - 1 " +
+            "WHERE e.id = :eventId AND e.confirmedRequests > 0")
+    int decrementConfirmedRequests(@Param("eventId") Long eventId);
+
+    /**
+     * Изменение счётчика подтверждённых заявок на delta без проверки лимита: для пакетной обработки
+     * заявок под блокировкой findByIdForUpdate.
+     */
+    @Modifying
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests + :delta WHERE e.id = :eventId")
+    int addConfirmedRequests(@Param("eventId") Long eventId, @Param("delta") long delta);
+
+    /**
+     * Событие с блокировкой строки до конца транзакции (SELECT ... FOR UPDATE).
+     * Пути, меняющие заявки события, берут её до заявок: блокировки всегда идут в порядке событие, затем заявки,
+     * и одновременные подтверждение, отклонение и отмена не взаимоблокируются.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Event e WHERE e.id = :eventId")
+    Optional<Event> findByIdForUpdate(@Param("eventId") Long eventId);
+
+    @Query("SELECT e.confirmedRequests FROM Event e WHERE e.id = :eventId")
+    long getConfirmedRequests(@Param("eventId") Long eventId);
 }
@@ -0,0 +1,76 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ConstructorExpression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewmservice.model.EventShortView;
+import ru.practicum.ewmservice.model.QCategory;
+import ru.practicum.ewmservice.model.QCompilation;
+import ru.practicum.ewmservice.model.QEvent;
+import ru.practicum.ewmservice.model.QUser;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Краткая информация о событиях проекцией: выбираются только колонки EventShortDto вместе с именами
+ * категории и инициатора, без description и без управляемых сущностей.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventShortViewRepository {
+    static final QEvent EVENT = QEvent.event;
+    static final QCategory CATEGORY = QCategory.category;
+    static final QUser INITIATOR = QUser.user;
+    static final ConstructorExpression<EventShortView> PROJECTION = Projections.constructor(EventShortView.class,
+            EVENT.id, EVENT.annotation, CATEGORY.id, CATEGORY.name, EVENT.confirmedRequests, EVENT.eventDate,
+            INITIATOR.id, INITIATOR.name, EVENT.paid, EVENT.title);
+
+    private final EntityManager entityManager;
+
+    /**
+     * События пользователя в порядке возрастания ID.
+     */
+    public List<EventShortView> findByInitiator(Long initiatorId, Pageable pageable) {
+        return new JPAQuery<>(entityManager)
+                .select(PROJECTION)
+                .from(EVENT)
+                .join(EVENT.category, CATEGORY)
+                .join(EVENT.initiator, INITIATOR)
+                .where(INITIATOR.id.eq(initiatorId))
+                .orderBy(EVENT.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+    }
+
+    /**
+     * События подборок одним запросом.
+     *
+     * @return Мапа (id подборки, её события в порядке возрастания ID).
+     */
+    public Map<Long, List<EventShortView>> findByCompilations(Collection<Long> compilationIds) {
+        QCompilation qCompilation = QCompilation.compilation;
+        List<Tuple> rows = new JPAQuery<>(entityManager)
+                .select(qCompilation.id, PROJECTION)
+                .from(qCompilation)
+                .join(qCompilation.events, EVENT)
+                .join(EVENT.category, CATEGORY)
+                .join(EVENT.initiator, INITIATOR)
+                .where(qCompilation.id.in(compilationIds))
+                .orderBy(EVENT.id.asc())
+                .fetch();
+        Map<Long, List<EventShortView>> result = new HashMap<>();
+        rows.forEach(row -> result.computeIfAbsent(row.get(qCompilation.id), id -> new ArrayList<>())
+                .add(row.get(PROJECTION)));
+        return result;
+    }
+}
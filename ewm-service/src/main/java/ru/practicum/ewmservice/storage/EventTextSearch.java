@@ -0,0 +1,31 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.types.Predicate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import ru.practicum.ewmservice.model.Event;
+
+/**
+ * Полнотекстовый поиск событий по аннотации и описанию.
+ * Реализация выбирается по spring.sql.init.platform: индекс PostgreSQL или индекс в памяти для H2.
+ */
+public interface EventTextSearch {
+
+    /**
+     * Поиск событий, в аннотации или описании которых есть все слова text (как префиксы слов).
+     *
+     * @param filter   Остальные условия отбора.
+     * @param pageable Без сортировки результат упорядочивается по убыванию релевантности.
+     */
+    Slice<Event> search(String text, Predicate filter, Pageable pageable);
+
+    /**
+     * Количество событий, найденных search с теми же text и filter.
+     */
+    long count(String text, Predicate filter);
+
+    /**
+     * Обновление индекса после сохранения события.
+     */
+    void index(Event event);
+}
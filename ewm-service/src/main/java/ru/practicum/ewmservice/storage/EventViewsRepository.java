@@ -0,0 +1,70 @@
+package ru.practicum.ewmservice.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.model.EventState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Колонка events.views, которую ведёт синхронизация с сервером статистики.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventViewsRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Очередная порция опубликованных событий в порядке возрастания ID.
+     *
+     * @return Мапа (id события, сохранённое количество просмотров).
+     */
+    public Map<Long, Long> findPublished(long afterId, int limit) {
+        return jdbcTemplate.query("SELECT event_id, views FROM events WHERE state = ? AND event_id > ? " +
+                        "ORDER BY event_id LIMIT ?",
+                rs -> {
+                    Map<Long, Long> result = new LinkedHashMap<>();
+                    while (rs.next())
+                        result.put(rs.getLong(1), rs.getLong(2));
+                    return result;
+                },
+                EventState.PUBLISHED.name(), afterId, limit);
+    }
+
+    /**
+     * Опубликованные события из списка.
+     *
+     * @return Мапа (id события, сохранённое количество просмотров).
+     */
+    public Map<Long, Long> findPublished(List<Long> eventIds) {
+        String placeholders = String.join(", ", Collections.nCopies(eventIds.size(), "?"));
+        List<Object> args = new ArrayList<>(eventIds.size() + 1);
+        args.add(EventState.PUBLISHED.name());
+        args.addAll(eventIds);
+        return jdbcTemplate.query("SELECT event_id, views FROM events WHERE state = ? " +
+                        "AND event_id IN (" + placeholders + ")",
+                rs -> {
+                    Map<Long, Long> result = new LinkedHashMap<>();
+                    while (rs.next())
+                        result.put(rs.getLong(1), rs.getLong(2));
+                    return result;
+                },
+                args.toArray());
+    }
+
+    /**
+     * Запись новых значений одним JDBC batch.
+     */
+    @Transactional
+    public void updateViews(Map<Long, Long> views) {
+        List<Object[]> args = new ArrayList<>(views.size());
+        views.forEach((id, v) -> args.add(new Object[]{v, id}));
+        jdbcTemplate.batchUpdate("UPDATE events SET views = ? WHERE event_id = ?", args);
+    }
+}
@@ -0,0 +1,136 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.QEvent;
+import ru.practicum.ewmservice.util.SearchTerms;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс в памяти для H2, где нет полнотекстового поиска PostgreSQL.
+ * Строится при старте и обновляется при сохранении события через EventService. Вес слова в
+ * аннотации 1.0, в описании 0.4 - как веса A и B у ts_rank. Индекс только сужает выборку:
+ * остальные условия и существование события проверяются запросом к БД.
+ */
+@Repository
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.sql.init.platform", havingValue = "h2")
+public class InMemoryEventTextSearch implements EventTextSearch {
+    private static final double ANNOTATION_WEIGHT = 1.0;
+    private static final double DESCRIPTION_WEIGHT = 0.4;
+    private final EventRepository eventRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Слово -> (id события, вес слова в событии).
+    private final NavigableMap<String, Map<Long, Double>> postings = new TreeMap<>();
+    // id события -> проиндексированные слова, для обновления.
+    private final Map<Long, List<String>> indexedTerms = new HashMap<>();
+
+    @PostConstruct
+    void rebuild() {
+        eventRepository.findAll().forEach(this::index);
+        log.info("Text search index built, {} event(s).", indexedTerms.size());
+    }
+
+    @Override
+    public Slice<Event> search(String text, Predicate filter, Pageable pageable) {
+        List<String> terms = SearchTerms.parse(text);
+        if (terms.isEmpty())
+            return eventRepository.findSlice(filter, pageable, Event.WITH_CATEGORY_AND_INITIATOR);
+        Map<Long, Double> scores = match(terms);
+        if (scores.isEmpty())
+            return new SliceImpl<>(List.of(), pageable, false);
+        Predicate predicate = ExpressionUtils.and(filter, QEvent.event.id.in(scores.keySet()));
+        if (pageable.getSort().isSorted())
+            return eventRepository.findSlice(predicate, pageable, Event.WITH_CATEGORY_AND_INITIATOR);
+
+        List<Event> found = new ArrayList<>(eventRepository.findList(predicate, Event.WITH_CATEGORY_AND_INITIATOR));
+        found.sort(Comparator.comparing((Event event) -> scores.get(event.getId()), Comparator.reverseOrder())
+                .thenComparing(Event::getId));
+        int fromIndex = (int) Math.min(pageable.getOffset(), found.size());
+        int toIndex = Math.min(fromIndex + pageable.getPageSize(), found.size());
+        return new SliceImpl<>(found.subList(fromIndex, toIndex), pageable, toIndex < found.size());
+    }
+
+    @Override
+    public long count(String text, Predicate filter) {
+        List<String> terms = SearchTerms.parse(text);
+        if (terms.isEmpty())
+            return eventRepository.count(filter);
+        Map<Long, Double> scores = match(terms);
+        if (scores.isEmpty())
+            return 0;
+        return eventRepository.count(ExpressionUtils.and(filter, QEvent.event.id.in(scores.keySet())));
+    }
+
+    @Override
+    public void index(Event event) {
+        Map<String, Double> weights = new HashMap<>();
+        SearchTerms.parse(event.getAnnotation()).forEach(term -> weights.merge(term, ANNOTATION_WEIGHT, Double::sum));
+        SearchTerms.parse(event.getDescription())
+                .forEach(term -> weights.merge(term, DESCRIPTION_WEIGHT, Double::sum));
+        lock.writeLock().lock();
+        try {
+            List<String> previous = indexedTerms.remove(event.getId());
+            if (previous != null)
+                previous.forEach(term -> {
+                    Map<Long, Double> posting = postings.get(term);
+                    posting.remove(event.getId());
+                    if (posting.isEmpty())
+                        postings.remove(term);
+                });
+            weights.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>())
+                    .put(event.getId(), weight));
+            indexedTerms.put(event.getId(), new ArrayList<>(weights.keySet()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * События, содержащие все слова запроса как префиксы слов.
+     *
+     * @return Мапа (id события, релевантность).
+     */
+    private Map<Long, Double> match(List<String> terms) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> result = null;
+            for (String term : new LinkedHashSet<>(terms)) {
+                Map<Long, Double> termScores = new HashMap<>();
+                postings.subMap(term, true, term + Character.MAX_VALUE, true).values()
+                        .forEach(posting -> posting.forEach((id, weight) -> termScores.merge(id, weight, Double::sum)));
+                if (result == null) {
+                    result = termScores;
+                } else {
+                    result.keySet().retainAll(termScores.keySet());
+                    result.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (result.isEmpty())
+                    break;
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewmservice.model.QEvent;
+
+/**
+ * Поиск по GiST-индексу events по ll_to_earth(location_lat, location_lon) (schema-postgresql.sql):
+ * куб earth_box отбирает кандидатов по индексу, earth_distance отсекает углы куба.
+ */
+@Repository
+@ConditionalOnProperty(name = "spring.sql.init.platform", havingValue = "postgresql")
+public class PostgresEventGeoSearch implements EventGeoSearch {
+
+    @Override
+    public Predicate within(double lat, double lon, double radiusKm) {
+        QEvent qEvent = QEvent.event;
+        double radiusM = radiusKm * 1000;
+        return ExpressionUtils.and(
+                Expressions.booleanTemplate("function('geo_box', {0}, {1}, {2}, {3}, {4}) = true",
+                        qEvent.locationLat, qEvent.locationLon, lat, lon, radiusM),
+                distance(lat, lon).loe(radiusKm));
+    }
+
+    @Override
+    public NumberExpression<Double> distance(double lat, double lon) {
+        QEvent qEvent = QEvent.event;
+        return Expressions.numberTemplate(Double.class, "function('geo_distance', {0}, {1}, {2}, {3})",
+                qEvent.locationLat, qEvent.locationLon, lat, lon);
+    }
+}
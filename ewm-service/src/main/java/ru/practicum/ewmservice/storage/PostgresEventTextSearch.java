@@ -0,0 +1,64 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.querydsl.QSort;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.QEvent;
+import ru.practicum.ewmservice.util.CustomPageRequest;
+import ru.practicum.ewmservice.util.SearchTerms;
+
+import java.util.List;
+
+/**
+ * Поиск по генерируемой колонке events.search_vector с GIN-индексом (schema-postgresql.sql).
+ * Колонку пересчитывает сама БД при каждой записи события.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.sql.init.platform", havingValue = "postgresql")
+public class PostgresEventTextSearch implements EventTextSearch {
+    private final EventRepository eventRepository;
+
+    @Override
+    public Slice<Event> search(String text, Predicate filter, Pageable pageable) {
+        List<String> terms = SearchTerms.parse(text);
+        if (terms.isEmpty())
+            return eventRepository.findSlice(filter, pageable, Event.WITH_CATEGORY_AND_INITIATOR);
+        QEvent qEvent = QEvent.event;
+        String query = SearchTerms.toTsQuery(terms);
+        Predicate match = match(query);
+        if (pageable.getSort().isUnsorted()) {
+            NumberExpression<Double> rank = Expressions
+                    .numberTemplate(Double.class, "function('fts_rank', {0}, {1})", qEvent.id, query);
+            pageable = CustomPageRequest.of((int) pageable.getOffset(), pageable.getPageSize(),
+                    new QSort(rank.desc(), qEvent.id.asc()));
+        }
+        return eventRepository.findSlice(ExpressionUtils.and(filter, match), pageable,
+                Event.WITH_CATEGORY_AND_INITIATOR);
+    }
+
+    @Override
+    public long count(String text, Predicate filter) {
+        List<String> terms = SearchTerms.parse(text);
+        if (terms.isEmpty())
+            return eventRepository.count(filter);
+        return eventRepository.count(ExpressionUtils.and(filter, match(SearchTerms.toTsQuery(terms))));
+    }
+
+    @Override
+    public void index(Event event) {
+        // search_vector - генерируемая колонка.
+    }
+
+    private Predicate match(String query) {
+        return Expressions.booleanTemplate("function('fts_match', {0}, {1}) = true", QEvent.event.id, query);
+    }
+}
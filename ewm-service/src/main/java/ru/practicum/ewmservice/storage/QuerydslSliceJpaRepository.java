@@ -0,0 +1,64 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.data.querydsl.SimpleEntityPathResolver;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Базовый класс репозиториев (@EnableJpaRepositories.repositoryBaseClass): SimpleJpaRepository
+ * и выборка Slice по QueryDSL-условию.
+ */
+public class QuerydslSliceJpaRepository<T, I> extends SimpleJpaRepository<T, I>
+        implements SliceQuerydslExecutor<T> {
+    private static final String LOAD_GRAPH = "javax.persistence.loadgraph";
+    private final EntityManager entityManager;
+    private final EntityPath<T> path;
+    private final Querydsl querydsl;
+
+    public QuerydslSliceJpaRepository(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
+        super(entityInformation, entityManager);
+        this.entityManager = entityManager;
+        this.path = SimpleEntityPathResolver.INSTANCE.createPath(entityInformation.getJavaType());
+        this.querydsl = new Querydsl(entityManager, new PathBuilder<>(path.getType(), path.getMetadata()));
+    }
+
+    @Override
+    public Slice<T> findSlice(Predicate predicate, Pageable pageable) {
+        return findSlice(predicate, pageable, null);
+    }
+
+    @Override
+    public Slice<T> findSlice(Predicate predicate, Pageable pageable, String entityGraph) {
+        JPAQuery<T> query = createQuery(predicate, entityGraph);
+        querydsl.applySorting(pageable.getSort(), query);
+        int size = pageable.getPageSize();
+        List<T> content = query.offset(pageable.getOffset())
+                .limit(size + 1L)
+                .fetch();
+        boolean hasNext = content.size() > size;
+        return new SliceImpl<>(hasNext ? content.subList(0, size) : content, pageable, hasNext);
+    }
+
+    @Override
+    public List<T> findList(Predicate predicate, String entityGraph) {
+        return createQuery(predicate, entityGraph).fetch();
+    }
+
+    private JPAQuery<T> createQuery(Predicate predicate, String entityGraph) {
+        JPAQuery<T> query = new JPAQuery<>(entityManager).select(path).from(path).where(predicate);
+        if (entityGraph != null)
+            query.setHint(LOAD_GRAPH, entityManager.getEntityGraph(entityGraph));
+        return query;
+    }
+}
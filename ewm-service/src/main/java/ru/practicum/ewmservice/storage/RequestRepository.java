@@ -1,18 +1,68 @@
 package ru.practicum.ewmservice.storage;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.ewmservice.model.Request;
 import ru.practicum.ewmservice.model.RequestState;
+import ru.practicum.ewmservice.model.RequestStateView;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface RequestRepository  extends JpaRepository<Request, Long> {
 
-    List<Request> findByEvent_IdAndState(Long eventId, RequestState requestState);
+    // Условия по внешним ключам явным JPQL: производные запросы findByEvent_Id и подобные соединяют
+    // заявки с events/users и отбирают по ключу соединённой таблицы, и индекс заявок не применяется.
+    @Query("SELECT COUNT(r) FROM Request r WHERE r.event.id = :eventId AND r.state = :state")
+    long countByEvent_IdAndState(@Param("eventId") Long eventId, @Param("state") RequestState requestState);
 
-    long countByEvent_IdAndState(Long eventId, RequestState requestState);
+    @Query("SELECT r FROM Request r WHERE r.requester.id = :requesterId")
+    List<Request> findByRequester_Id(@Param("requesterId") Long requesterId);
 
-    List<Request> findByRequester_Id(Long requesterId);
+    @Query("SELECT r FROM Request r WHERE r.event.id = :eventId")
+    List<Request> findByEvent_Id(@Param("eventId") Long eventId);
 
-    List<Request> findByEvent_Id(Long eventId);
+    /**
+     * Смена статуса заявки, если она всё ещё в статусе from: одновременная обработка одной заявки
+     * пройдёт только один раз.
+     *
+     * @return 1, если статус изменён, иначе 0.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Request r SET r.state = :to WHERE r.id = :requestId AND r.state = :from")
+    int updateState(@Param("requestId") Long requestId,
+                    @Param("from") RequestState from,
+                    @Param("to") RequestState to);
+
+    /**
+     * Пакетная смена статуса заявок, которые всё ещё в статусе from.
+     *
+     * @return Количество изменённых заявок.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Request r SET r.state = :to WHERE r.id IN :requestIds AND r.state = :from")
+    int updateStates(@Param("requestIds") Collection<Long> requestIds,
+                     @Param("from") RequestState from,
+                     @Param("to") RequestState to);
+
+    /**
+     * Статусы заявок события из списка; заявки других событий не возвращаются.
+     */
+    @Query("SELECT new ru.practicum.ewmservice.model.RequestStateView(r.id, r.state) FROM Request r " +
+            "WHERE r.event.id = :eventId AND r.id IN :requestIds")
+    List<RequestStateView> findStates(@Param("eventId") Long eventId,
+                                      @Param("requestIds") Collection<Long> requestIds);
+
+    /**
+     * Смена статуса всех заявок события в статусе from одним запросом.
+     *
+     * @return Количество изменённых заявок.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Request r SET r.state = :to WHERE r.event.id = :eventId AND r.state = :from")
+    int updateStateByEvent(@Param("eventId") Long eventId,
+                           @Param("from") RequestState from,
+                           @Param("to") RequestState to);
 }
@@ -0,0 +1,33 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.types.Predicate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.List;
+
+/**
+ * Выборка страницы по QueryDSL-условию без подсчёта общего количества записей.
+ * Реализация - QuerydslSliceJpaRepository, базовый класс всех репозиториев.
+ */
+@NoRepositoryBean
+public interface SliceQuerydslExecutor<T> {
+
+    /**
+     * Страница записей. Запрашивается на одну запись больше размера страницы, по ней определяется
+     * наличие следующей страницы, поэтому отдельный SELECT count(*) не нужен.
+     */
+    Slice<T> findSlice(Predicate predicate, Pageable pageable);
+
+    /**
+     * То же с именованным планом выборки (@NamedEntityGraph): связи из плана читаются тем же запросом.
+     * План не должен включать коллекции - иначе пагинация выполняется в памяти.
+     */
+    Slice<T> findSlice(Predicate predicate, Pageable pageable, String entityGraph);
+
+    /**
+     * Все записи по условию с именованным планом выборки.
+     */
+    List<T> findList(Predicate predicate, String entityGraph);
+}
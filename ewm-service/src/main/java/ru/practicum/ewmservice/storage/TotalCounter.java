@@ -0,0 +1,42 @@
+package ru.practicum.ewmservice.storage;
+
+import com.querydsl.core.BooleanBuilder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Общее количество записей списка - только по запросу клиента (total=true), списки его не считают.
+ * Без условий отбора берётся оценка планировщика PostgreSQL (pg_class.reltuples, обновляется
+ * autovacuum/ANALYZE), с условиями или без статистики (H2, таблица ещё не анализировалась) - точный count.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TotalCounter {
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    /**
+     * @param table Таблица сущности, для оценки по статистике.
+     */
+    public long count(QuerydslPredicateExecutor<?> repository, BooleanBuilder filter, String table) {
+        if (filter.hasValue())
+            return repository.count(filter);
+        if (isPostgres()) {
+            Double estimate = jdbcTemplate.queryForObject(
+                    "SELECT reltuples FROM pg_class WHERE oid = to_regclass(?)", Double.class, table);
+            if (estimate != null && estimate >= 0)
+                return Math.round(estimate);
+        }
+        return repository.count(filter);
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null)
+            postgres = "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) c ->
+                    c.getMetaData().getDatabaseProductName()));
+        return postgres;
+    }
+}
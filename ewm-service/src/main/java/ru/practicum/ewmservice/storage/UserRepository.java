@@ -4,6 +4,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import ru.practicum.ewmservice.model.User;
 
-public interface UserRepository extends JpaRepository<User, Long>, QuerydslPredicateExecutor<User> {
+public interface UserRepository extends
+        JpaRepository<User, Long>,
+        QuerydslPredicateExecutor<User>,
+        SliceQuerydslExecutor<User> {
 
 }
@@ -2,4 +2,6 @@ package ru.practicum.ewmservice.util;
 
 public class Constants {
     public static final String DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
 }
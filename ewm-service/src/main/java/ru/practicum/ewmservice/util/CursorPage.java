@@ -0,0 +1,33 @@
+package ru.practicum.ewmservice.util;
+
+import lombok.Value;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+import static ru.practicum.ewmservice.util.Constants.NEXT_CURSOR_HEADER;
+import static ru.practicum.ewmservice.util.Constants.TOTAL_COUNT_HEADER;
+
+/**
+ * Страница списка, курсор следующей страницы (только если дальше есть записи) и общее количество
+ * записей (только если запрошено).
+ */
+@Value
+public class CursorPage<T> {
+    List<T> items;
+    PageCursor next;
+    Long total;
+
+    /**
+     * Ответ контроллера: тело - список, как и без курсоров, курсор и количество - в заголовках
+     * X-Next-Cursor и X-Total-Count.
+     */
+    public ResponseEntity<List<T>> toResponseEntity() {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (next != null)
+            response.header(NEXT_CURSOR_HEADER, next.encode());
+        if (total != null)
+            response.header(TOTAL_COUNT_HEADER, total.toString());
+        return response.body(items);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.ewmservice.util;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.data.domain.Slice;
+import ru.practicum.ewmservice.customException.ValidationDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Курсор для постраничного вывода по ключу (keyset): значение ключа сортировки и ID последней
+ * выданной записи. Следующая страница начинается строго после этой пары, без OFFSET.
+ * Клиенту курсор передаётся непрозрачной строкой (параметр after, заголовок X-Next-Cursor).
+ */
+@Value
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class PageCursor {
+    Kind kind;
+    String key;
+    long id;
+
+    /**
+     * Ключ сортировки, к которому привязан курсор. Всегда дополняется ID для однозначности порядка.
+     */
+    public enum Kind {
+        ID,
+        EVENT_DATE,
+        VIEWS
+    }
+
+    public static PageCursor ofId(long id) {
+        return new PageCursor(Kind.ID, "", id);
+    }
+
+    public static PageCursor ofEventDate(LocalDateTime eventDate, long id) {
+        return new PageCursor(Kind.EVENT_DATE, eventDate.toString(), id);
+    }
+
+    public static PageCursor ofViews(long views, long id) {
+        return new PageCursor(Kind.VIEWS, String.valueOf(views), id);
+    }
+
+    public LocalDateTime getEventDate() {
+        return LocalDateTime.parse(key);
+    }
+
+    public long getViews() {
+        return Long.parseLong(key);
+    }
+
+    /**
+     * Курсор после последнего элемента страницы, если дальше есть записи, иначе null.
+     */
+    public static <E> PageCursor next(Slice<E> slice, Function<E, PageCursor> cursorOf) {
+        List<E> items = slice.getContent();
+        return slice.hasNext() ? cursorOf.apply(items.get(items.size() - 1)) : null;
+    }
+
+    public String encode() {
+        String raw = kind.name() + "|" + key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбор курсора из запроса.
+     *
+     * @param expected Ключ сортировки запроса: курсор другой сортировки не подходит.
+     */
+    public static PageCursor decode(String token, Kind expected) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split("\\|", -1);
+            if (parts.length == 3 && Kind.valueOf(parts[0]) == expected) {
+                PageCursor cursor = new PageCursor(expected, parts[1], Long.parseLong(parts[2]));
+                // Проверка ключа: нечисловые просмотры или дата выбросят исключение здесь, а не в запросе.
+                if (expected == Kind.EVENT_DATE)
+                    cursor.getEventDate();
+                if (expected == Kind.VIEWS)
+                    cursor.getViews();
+                return cursor;
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // Ниже общее исключение.
+        }
+        throw new ValidationDataException(String.format("Invalid cursor after=%s", token));
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.ewmservice.util;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * HQL-функции полнотекстового поиска по колонке events.search_vector (только PostgreSQL),
+ * запрос передаётся в синтаксисе to_tsquery.
+ * Обе принимают ID события, так как вектор в Event не отображается: отдельная сущность на той же таблице
+ * заставляла бы Hibernate предупреждать (HHH000487) при каждом массовом UPDATE events.
+ * <ul>
+ * <li>fts_match(id события, запрос) - событие соответствует запросу. Подзапрос не связан с внешним,
+ * и PostgreSQL выполняет IN как semi join по GIN-индексу;</li>
+ * <li>fts_rank(id события, запрос) - релевантность события запросу (ts_rank).</li>
+ * </ul>
+ * HQL-функции поиска по месту события (расширение earthdistance, только PostgreSQL), аргументы -
+ * широта и долгота события, затем широта и долгота центра:
+ * <ul>
+ * <li>geo_box(..., радиус в метрах) - событие внутри куба earth_box вокруг центра, проверка идёт
+ * по GiST-индексу;</li>
+ * <li>geo_distance(...) - расстояние по поверхности Земли в километрах.</li>
+ * </ul>
+ * Каждый аргумент в шаблоне используется один раз: повтор параметра JDBC в SQL сбил бы привязку.
+ */
+public class SearchFunctionsContributor implements MetadataBuilderContributor {
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applySqlFunction("fts_match", new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN,
+                "(?1 IN (SELECT fts.event_id FROM events fts " +
+                        "WHERE fts.search_vector @@ to_tsquery('simple', ?2)))"));
+        metadataBuilder.applySqlFunction("fts_rank", new SQLFunctionTemplate(StandardBasicTypes.DOUBLE,
+                "(SELECT ts_rank(fts.search_vector, to_tsquery('simple', ?2)) FROM events fts " +
+                        "WHERE fts.event_id = ?1)"));
+        metadataBuilder.applySqlFunction("geo_box", new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN,
+                "earth_box(ll_to_earth(?3, ?4), ?5) @> ll_to_earth(?1, ?2)"));
+        metadataBuilder.applySqlFunction("geo_distance", new SQLFunctionTemplate(StandardBasicTypes.DOUBLE,
+                "earth_distance(ll_to_earth(?3, ?4), ll_to_earth(?1, ?2)) / 1000"));
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.ewmservice.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Разбор текста на слова для полнотекстового поиска событий.
+ * Словом считается последовательность букв и цифр, регистр не учитывается.
+ */
+public class SearchTerms {
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Все слова текста в порядке следования, с повторами.
+     */
+    public static List<String> parse(String text) {
+        if (text == null)
+            return new ArrayList<>();
+        return Arrays.stream(SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+                .filter(term -> !term.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Запрос для to_tsquery: каждое слово ищется как префикс, все слова обязательны.
+     * Слова состоят только из букв и цифр, поэтому спецсимволы tsquery в запрос не попадают.
+     */
+    public static String toTsQuery(List<String> terms) {
+        return terms.stream()
+                .distinct()
+                .map(term -> term + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+}
@@ -0,0 +1,3 @@
+-- Выполняется после schema.sql (spring.sql.init.schema-locations).
+-- Поиск событий по месту: ограничивающий прямоугольник по B-tree индексу.
+CREATE INDEX IF NOT EXISTS idx_events_location ON events (location_lat, location_lon);
@@ -0,0 +1,58 @@
+-- Выполняется после schema.sql (spring.sql.init.schema-locations).
+-- Полнотекстовый поиск событий: аннотация с весом A, описание с весом B. Колонка генерируемая,
+-- поэтому пересчитывается при каждой записи события.
+ALTER TABLE events
+    ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+        GENERATED ALWAYS AS (setweight(to_tsvector('simple', annotation), 'A') ||
+                             setweight(to_tsvector('simple', description), 'B')) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_events_search_vector ON events USING GIN (search_vector);
+
+-- Публичный список событий: только опубликованные и, без диапазона дат, только будущие.
+-- now() в условии частичного индекса недопустим, будущие события отбираются диапазоном по event_date.
+CREATE INDEX IF NOT EXISTS idx_events_published_event_date ON events (event_date, event_id)
+    WHERE state = 'PUBLISHED';
+CREATE INDEX IF NOT EXISTS idx_events_published_views ON events (views, event_id)
+    WHERE state = 'PUBLISHED';
+
+-- Заявки события, ожидающие решения: подтверждение и отклонение заявок, отказ остальным при заполнении лимита.
+CREATE INDEX IF NOT EXISTS idx_requests_event_pending ON requests (event_id, request_id)
+    WHERE status = 'PENDING';
+
+-- Поиск событий по месту: GiST-индекс по точке на поверхности Земли (расширения cube и earthdistance).
+CREATE EXTENSION IF NOT EXISTS cube;
+CREATE EXTENSION IF NOT EXISTS earthdistance;
+
+CREATE INDEX IF NOT EXISTS idx_events_location ON events USING GIST (ll_to_earth(location_lat, location_lon));
+
+-- Переход с IDENTITY на последовательности в существующей базе: последовательность сдвигается за максимальный id
+-- (только вперёд), колонка теряет IDENTITY и получает значение по умолчанию из последовательности.
+SELECT setval('users_seq', (SELECT MAX(user_id) + 1 FROM users), false)
+FROM users_seq
+WHERE (SELECT MAX(user_id) FROM users) >= last_value + CASE WHEN is_called THEN 50 ELSE 0 END;
+ALTER TABLE users ALTER COLUMN user_id DROP IDENTITY IF EXISTS;
+ALTER TABLE users ALTER COLUMN user_id SET DEFAULT nextval('users_seq');
+
+SELECT setval('categories_seq', (SELECT MAX(category_id) + 1 FROM categories), false)
+FROM categories_seq
+WHERE (SELECT MAX(category_id) FROM categories) >= last_value + CASE WHEN is_called THEN 50 ELSE 0 END;
+ALTER TABLE categories ALTER COLUMN category_id DROP IDENTITY IF EXISTS;
+ALTER TABLE categories ALTER COLUMN category_id SET DEFAULT nextval('categories_seq');
+
+SELECT setval('events_seq', (SELECT MAX(event_id) + 1 FROM events), false)
+FROM events_seq
+WHERE (SELECT MAX(event_id) FROM events) >= last_value + CASE WHEN is_called THEN 50 ELSE 0 END;
+ALTER TABLE events ALTER COLUMN event_id DROP IDENTITY IF EXISTS;
+ALTER TABLE events ALTER COLUMN event_id SET DEFAULT nextval('events_seq');
+
+SELECT setval('requests_seq', (SELECT MAX(request_id) + 1 FROM requests), false)
+FROM requests_seq
+WHERE (SELECT MAX(request_id) FROM requests) >= last_value + CASE WHEN is_called THEN 50 ELSE 0 END;
+ALTER TABLE requests ALTER COLUMN request_id DROP IDENTITY IF EXISTS;
+ALTER TABLE requests ALTER COLUMN request_id SET DEFAULT nextval('requests_seq');
+
+SELECT setval('compilations_seq', (SELECT MAX(compilation_id) + 1 FROM compilations), false)
+FROM compilations_seq
+WHERE (SELECT MAX(compilation_id) FROM compilations) >= last_value + CASE WHEN is_called THEN 50 ELSE 0 END;
+ALTER TABLE compilations ALTER COLUMN compilation_id DROP IDENTITY IF EXISTS;
+ALTER TABLE compilations ALTER COLUMN compilation_id SET DEFAULT nextval('compilations_seq');
@@ -1,3 +1,11 @@
+-- Идентификаторы выдаёт Hibernate из последовательностей блоками по 50 значений (pooled-lo):
+-- без IDENTITY вставки идут пакетами (hibernate.jdbc.batch_size).
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS categories_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS events_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS requests_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS compilations_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS users
 (
     user_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
@@ -31,11 +39,18 @@ CREATE TABLE IF NOT EXISTS events
     published_on       TIMESTAMP WITHOUT TIME ZONE,
     state              VARCHAR(10)                             NOT NULL,
     title              VARCHAR(120)                            NOT NULL,
+    views              BIGINT DEFAULT 0                        NOT NULL,
+    confirmed_requests BIGINT DEFAULT 0                        NOT NULL,
     CONSTRAINT pk_events PRIMARY KEY (event_id),
     CONSTRAINT fk_events_initiator FOREIGN KEY (initiator_id) REFERENCES users (user_id) ON DELETE CASCADE,
     CONSTRAINT fk_events_category FOREIGN KEY (category_id) REFERENCES categories (category_id) ON DELETE RESTRICT
 );
 
+-- Просмотры копируются с сервера статистики фоновой синхронизацией (EventViewsSyncService) для сортировки в БД.
+ALTER TABLE events ADD COLUMN IF NOT EXISTS views BIGINT DEFAULT 0 NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_events_views ON events (views, event_id);
+
 CREATE TABLE IF NOT EXISTS requests
 (
     request_id   BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
@@ -49,6 +64,13 @@ CREATE TABLE IF NOT EXISTS requests
     CONSTRAINT fk_request_event FOREIGN KEY (event_id) REFERENCES events ON DELETE CASCADE
 );
 
+-- Индексы под условия поиска EventService (findAll, findByAdmin, findByInitiator) и RequestRepository.
+-- Заявки пользователя (requester_id) ищутся по уникальному ключу (requester_id, event_id).
+CREATE INDEX IF NOT EXISTS idx_events_state_event_date ON events (state, event_date);
+CREATE INDEX IF NOT EXISTS idx_events_initiator ON events (initiator_id);
+CREATE INDEX IF NOT EXISTS idx_events_category ON events (category_id);
+CREATE INDEX IF NOT EXISTS idx_requests_event_status ON requests (event_id, status);
+
 CREATE TABLE IF NOT EXISTS compilations
 (
     compilation_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
@@ -65,3 +87,25 @@ CREATE TABLE IF NOT EXISTS compilations_events
     CONSTRAINT fk_compilation FOREIGN KEY (compilation_id) REFERENCES compilations ON DELETE CASCADE,
     CONSTRAINT fk_event FOREIGN KEY (event_id) REFERENCES events ON DELETE SET NULL
 );
+
+-- Удаление события обнуляет ссылки на него в подборках.
+CREATE INDEX IF NOT EXISTS idx_compilations_events_event ON compilations_events (event_id);
+
+-- Выполненные разовые миграции данных: схема применяется при каждом запуске, миграция - только без отметки.
+CREATE TABLE IF NOT EXISTS schema_migrations
+(
+    name VARCHAR(100) NOT NULL,
+    CONSTRAINT pk_schema_migrations PRIMARY KEY (name)
+);
+
+-- Счётчик подтверждённых заявок, его ведут RequestService и EventService.
+-- Разовый пересчёт заполняет счётчик по заявкам в уже существующей базе.
+ALTER TABLE events ADD COLUMN IF NOT EXISTS confirmed_requests BIGINT DEFAULT 0 NOT NULL;
+
+UPDATE events e
+SET confirmed_requests = (SELECT COUNT(*) FROM requests r WHERE r.event_id = e.event_id AND r.status = 'CONFIRMED')
+WHERE NOT EXISTS (SELECT 1 FROM schema_migrations WHERE name = 'events.confirmed_requests');
+
+INSERT INTO schema_migrations (name)
+SELECT 'events.confirmed_requests'
+WHERE NOT EXISTS (SELECT 1 FROM schema_migrations WHERE name = 'events.confirmed_requests');
@@ -0,0 +1,121 @@
+package ru.practicum.ewmservice;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.model.Category;
+import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventState;
+import ru.practicum.ewmservice.model.User;
+import ru.practicum.ewmservice.service.EventService;
+import ru.practicum.ewmservice.service.EventViewsSyncService;
+import ru.practicum.ewmservice.storage.CategoryRepository;
+import ru.practicum.ewmservice.storage.EventRepository;
+import ru.practicum.ewmservice.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * Синхронизация events.views между полными обходами сверяет только просмотренные события.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class EventViewsSyncTests {
+    private static final long VIEWS = 7;
+
+    @Autowired
+    private EventViewsSyncService eventViewsSyncService;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private StatsClient statsClient;
+
+    private User initiator;
+    private Category category;
+
+    @BeforeAll
+    void setUp() {
+        initiator = userRepository.save(User.builder()
+                .name("views initiator")
+                .email("views.initiator@ewm.ru")
+                .build());
+        category = categoryRepository.save(Category.builder()
+                .name("views")
+                .build());
+    }
+
+    @Test
+    void onlyViewedEventsAreSynced() {
+        // Полный обход уже прошёл при запуске, до следующего - stats-server.views-sync.full-interval-ms.
+        Event viewed = saveEvent();
+        Event other = saveEvent();
+        when(statsClient.getStats(anyList())).thenAnswer(invocation -> invocation.<List<Long>>getArgument(0)
+                .stream()
+                .collect(Collectors.toMap(Function.identity(), id -> VIEWS)));
+
+        eventService.findById(viewed.getId(), "/events/" + viewed.getId(), "127.0.0.1");
+        eventViewsSyncService.sync();
+
+        assertEquals(VIEWS, views(viewed));
+        assertEquals(0, views(other));
+    }
+
+    @Test
+    void viewedEventIsSyncedAgainNextTime() {
+        Event event = saveEvent();
+        when(statsClient.getStats(anyList())).thenReturn(Map.of());
+        eventViewsSyncService.markViewed(event.getId());
+        eventViewsSyncService.sync();
+        assertEquals(0, views(event));
+
+        // Хит дошёл до сервера статистики уже после синхронизации.
+        when(statsClient.getStats(anyList())).thenReturn(Map.of(event.getId(), VIEWS));
+        eventViewsSyncService.sync();
+        assertEquals(VIEWS, views(event));
+    }
+
+    private long views(Event event) {
+        return jdbcTemplate.queryForObject("SELECT views FROM events WHERE event_id = ?", Long.class,
+                event.getId());
+    }
+
+    private Event saveEvent() {
+        return eventRepository.save(Event.builder()
+                .annotation("views annotation")
+                .description("views description")
+                .category(category)
+                .initiator(initiator)
+                .createdOn(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS))
+                .eventDate(LocalDateTime.now().plusDays(10).truncatedTo(ChronoUnit.SECONDS))
+                .locationLat(55.75)
+                .locationLon(37.62)
+                .paid(false)
+                .participantLimit(0)
+                .requestModeration(true)
+                .state(EventState.PUBLISHED)
+                .title("views")
+                .build());
+    }
+}
@@ -0,0 +1,168 @@
+package ru.practicum.ewmservice;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.model.Category;
+import ru.practicum.ewmservice.model.Compilation;
+import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventState;
+import ru.practicum.ewmservice.model.User;
+import ru.practicum.ewmservice.storage.CategoryRepository;
+import ru.practicum.ewmservice.storage.CompilationRepository;
+import ru.practicum.ewmservice.storage.EventRepository;
+import ru.practicum.ewmservice.storage.EventTextSearch;
+import ru.practicum.ewmservice.storage.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Количество SQL-запросов на один запрос к спискам. Все события - с разными категориями
+ * и инициаторами, поэтому ленивая или поштучная загрузка связей (N+1) увеличит счётчик.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "events.list-cache.ttl-ms=0"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListingStatementCountTests {
+    private static final int EVENTS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private CompilationRepository compilationRepository;
+    @Autowired
+    private EventTextSearch eventTextSearch;
+    @MockBean
+    private StatsClient statsClient;
+
+    private Statistics statistics;
+    private Long initiatorId;
+    private Long eventId;
+    private Long compilationId;
+
+    @BeforeAll
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<User> users = new ArrayList<>();
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            users.add(userRepository.save(User.builder()
+                    .name("statements" + i)
+                    .email("statements" + i + "@ewm.ru")
+                    .build()));
+            categories.add(categoryRepository.save(Category.builder()
+                    .name("statements" + i)
+                    .build()));
+        }
+        // Первый пользователь - инициатор событий во всех категориях, остальные - по одному событию.
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(saveEvent(users.get(0), categories.get(i)));
+            if (i > 0)
+                events.add(saveEvent(users.get(i), categories.get(i)));
+        }
+        Compilation all = compilationRepository.save(Compilation.builder()
+                .title("statements all")
+                .pinned(false)
+                .events(events)
+                .build());
+        compilationRepository.save(Compilation.builder()
+                .title("statements some")
+                .pinned(true)
+                .events(events.subList(0, 2))
+                .build());
+        initiatorId = users.get(0).getId();
+        eventId = events.get(0).getId();
+        compilationId = all.getId();
+    }
+
+    @Test
+    void publicEventsListInOneStatement() throws Exception {
+        assertEquals(1, statements(get("/events")));
+        assertEquals(1, statements(get("/events").param("sort", "EVENT_DATE")));
+        assertEquals(1, statements(get("/events").param("sort", "VIEWS")));
+        assertEquals(1, statements(get("/events").param("text", "statements")));
+    }
+
+    @Test
+    void privateEventsListInTwoStatements() throws Exception {
+        // Проверка пользователя и список.
+        assertEquals(2, statements(get("/users/{userId}/events", initiatorId)));
+    }
+
+    @Test
+    void adminEventsListInOneStatement() throws Exception {
+        assertEquals(1, statements(get("/admin/events")));
+    }
+
+    @Test
+    void compilationsListInTwoStatements() throws Exception {
+        // Страница подборок и их события.
+        assertEquals(2, statements(get("/compilations")));
+    }
+
+    @Test
+    void compilationByIdInOneStatement() throws Exception {
+        assertEquals(1, statements(get("/compilations/{compId}", compilationId)));
+    }
+
+    @Test
+    void eventByIdInOneStatement() throws Exception {
+        assertEquals(1, statements(get("/events/{id}", eventId)));
+    }
+
+    private Event saveEvent(User initiator, Category category) {
+        Event event = eventRepository.save(Event.builder()
+                .annotation("statements annotation")
+                .description("statements description")
+                .category(category)
+                .initiator(initiator)
+                .createdOn(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS))
+                .eventDate(LocalDateTime.now().plusDays(10).truncatedTo(ChronoUnit.SECONDS))
+                .locationLat(55.75)
+                .locationLon(37.62)
+                .paid(false)
+                .participantLimit(0)
+                .requestModeration(false)
+                .state(EventState.PUBLISHED)
+                .title("statements")
+                .build());
+        eventTextSearch.index(event);
+        return event;
+    }
+
+    private long statements(MockHttpServletRequestBuilder request) throws Exception {
+        statistics.clear();
+        mockMvc.perform(request).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.ewmservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.model.User;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пропускная способность вставки и обновления сущностей: построчно (размер JDBC batch 1)
+ * и с настроенным hibernate.jdbc.batch_size. Запускается только явно:
+ * mvn test -pl ewm-service -Dtest=PersistenceBatchingBenchmark -Dbenchmark=true
+ * (с -Dspring.profiles.active=default - на PostgreSQL из application.properties). Вставленные строки удаляются.
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PersistenceBatchingBenchmark {
+    private static final int ROWS = 5000;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @MockBean
+    private StatsClient statsClient;
+
+    @Test
+    void insertAndUpdateThroughput() {
+        // Первый проход прогревает JIT и пул соединений, в результат не идёт.
+        run(null, 0);
+        run(1, 0);
+        for (int round = 1; round <= ROUNDS; round++) {
+            run(1, round);
+            run(null, round);
+        }
+    }
+
+    /**
+     * @param batchSize Размер JDBC batch для сессии, null - из настроек.
+     */
+    private void run(Integer batchSize, int round) {
+        String prefix = "bench" + System.nanoTime() + "-";
+        long insertStarted = System.nanoTime();
+        List<Long> ids = transactionTemplate.execute(status -> {
+            setBatchSize(batchSize);
+            List<User> users = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                User user = User.builder()
+                        .name(prefix + i)
+                        .email(prefix + i + "@bench.ru")
+                        .build();
+                entityManager.persist(user);
+                users.add(user);
+            }
+            entityManager.flush();
+            List<Long> result = new ArrayList<>(ROWS);
+            users.forEach(u -> result.add(u.getId()));
+            return result;
+        });
+        long insertMs = (System.nanoTime() - insertStarted) / 1_000_000;
+
+        long updateStarted = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            setBatchSize(batchSize);
+            entityManager.createQuery("SELECT u FROM User u WHERE u.id IN :ids", User.class)
+                    .setParameter("ids", ids)
+                    .getResultList()
+                    .forEach(u -> u.setName(u.getName() + "-updated"));
+            entityManager.flush();
+        });
+        long updateMs = (System.nanoTime() - updateStarted) / 1_000_000;
+
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("DELETE FROM User u WHERE u.id IN :ids")
+                .setParameter("ids", ids)
+                .executeUpdate());
+
+        if (round > 0)
+            log.info("round={}, batch={}: insert {} rows in {} ms ({} rows/s), update in {} ms ({} rows/s)",
+                    round, batchSize == null ? "configured" : batchSize, ROWS,
+                    insertMs, ROWS * 1000L / Math.max(1, insertMs),
+                    updateMs, ROWS * 1000L / Math.max(1, updateMs));
+    }
+
+    private void setBatchSize(Integer batchSize) {
+        if (batchSize != null)
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+    }
+}
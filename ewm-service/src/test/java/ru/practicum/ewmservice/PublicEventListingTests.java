@@ -0,0 +1,91 @@
+package ru.practicum.ewmservice;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.model.Category;
+import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventState;
+import ru.practicum.ewmservice.model.User;
+import ru.practicum.ewmservice.storage.CategoryRepository;
+import ru.practicum.ewmservice.storage.EventRepository;
+import ru.practicum.ewmservice.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.practicum.ewmservice.util.Constants.TOTAL_COUNT_HEADER;
+
+/**
+ * Публичный список GET /events по спецификации API содержит только опубликованные события.
+ */
+@SpringBootTest(properties = "events.list-cache.ttl-ms=0")
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PublicEventListingTests {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @MockBean
+    private StatsClient statsClient;
+
+    private Category category;
+    private final Map<EventState, Event> events = new HashMap<>();
+
+    @BeforeAll
+    void setUp() {
+        User initiator = userRepository.save(User.builder()
+                .name("listing initiator")
+                .email("listing.initiator@ewm.ru")
+                .build());
+        category = categoryRepository.save(Category.builder()
+                .name("listing")
+                .build());
+        for (EventState state : EventState.values()) {
+            events.put(state, eventRepository.save(Event.builder()
+                    .annotation("listing annotation")
+                    .description("listing description")
+                    .category(category)
+                    .initiator(initiator)
+                    .createdOn(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS))
+                    .eventDate(LocalDateTime.now().plusDays(10).truncatedTo(ChronoUnit.SECONDS))
+                    .locationLat(55.75)
+                    .locationLon(37.62)
+                    .paid(false)
+                    .participantLimit(0)
+                    .requestModeration(true)
+                    .state(state)
+                    .title("listing " + state)
+                    .build()));
+        }
+    }
+
+    @Test
+    void unpublishedEventsAreNotListed() throws Exception {
+        mockMvc.perform(get("/events")
+                        .param("categories", category.getId().toString())
+                        .param("total", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(events.get(EventState.PUBLISHED).getId()))
+                .andExpect(header().string(TOTAL_COUNT_HEADER, "1"));
+    }
+}
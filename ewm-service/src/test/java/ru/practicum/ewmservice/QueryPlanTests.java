@@ -0,0 +1,194 @@
+package ru.practicum.ewmservice;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.model.Category;
+import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventState;
+import ru.practicum.ewmservice.model.Request;
+import ru.practicum.ewmservice.model.RequestState;
+import ru.practicum.ewmservice.model.User;
+import ru.practicum.ewmservice.model.dto.RequestStatusUpdateRequest;
+import ru.practicum.ewmservice.service.EventService;
+import ru.practicum.ewmservice.service.RequestService;
+import ru.practicum.ewmservice.storage.CategoryRepository;
+import ru.practicum.ewmservice.storage.EventRepository;
+import ru.practicum.ewmservice.storage.RequestRepository;
+import ru.practicum.ewmservice.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static ru.practicum.ewmservice.util.Constants.DATE_PATTERN;
+
+/**
+ * Планы запросов, которые EventService.findAll, findByAdmin, findAllPrivate и обработка заявок
+ * отправляют в БД: таблицы events и requests не должны читаться полным просмотром.
+ * SQL перехватывается SqlCapture и объясняется с теми же параметрами.
+ * На PostgreSQL полный просмотр запрещается (enable_seqscan), и он остаётся в плане только без подходящего индекса.
+ */
+@SpringBootTest(properties = "events.list-cache.ttl-ms=0")
+@Import(SqlCapture.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTests {
+    private static final int USERS = 20;
+    private static final int CATEGORIES = 10;
+    private static final int EVENTS = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private SqlCapture sqlCapture;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private RequestService requestService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private RequestRepository requestRepository;
+    @MockBean
+    private StatsClient statsClient;
+
+    private final List<User> users = new ArrayList<>();
+    private final List<Category> categories = new ArrayList<>();
+    private final List<Event> events = new ArrayList<>();
+    private final List<Request> requests = new ArrayList<>();
+    private Event event;
+    private String now;
+    private String tomorrow;
+
+    @BeforeAll
+    void setUp() {
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.builder()
+                    .name("plans" + i)
+                    .email("plans" + i + "@ewm.ru")
+                    .build());
+        }
+        for (int i = 0; i < CATEGORIES; i++) {
+            categories.add(Category.builder()
+                    .name("plans" + i)
+                    .build());
+        }
+        userRepository.saveAll(users);
+        categoryRepository.saveAll(categories);
+        LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(Event.builder()
+                    .annotation("plans annotation")
+                    .description("plans description")
+                    .category(categories.get(i % CATEGORIES))
+                    .initiator(users.get(i % USERS))
+                    .createdOn(base)
+                    .eventDate(base.plusHours(i - EVENTS / 2))
+                    .locationLat(55.75)
+                    .locationLon(37.62)
+                    .paid(false)
+                    .participantLimit(0)
+                    .requestModeration(true)
+                    .state(EventState.values()[i % EventState.values().length])
+                    .title("plans")
+                    .build());
+        }
+        eventRepository.saveAll(events);
+        for (int i = 0; i < EVENTS; i++) {
+            for (int u = 1; u <= 3; u++) {
+                requests.add(Request.builder()
+                        .requester(users.get((i + u) % USERS))
+                        .event(events.get(i))
+                        .created(base)
+                        .state(RequestState.values()[(i + u) % RequestState.values().length])
+                        .build());
+            }
+        }
+        requestRepository.saveAll(requests);
+        jdbcTemplate.execute("ANALYZE");
+        event = events.get(EVENTS / 2);
+        DateTimeFormatter dtf = DateTimeFormatter.ofPattern(DATE_PATTERN);
+        now = base.format(dtf);
+        tomorrow = base.plusDays(1).format(dtf);
+    }
+
+    @AfterAll
+    void tearDown() {
+        requestRepository.deleteAllInBatch(requests);
+        eventRepository.deleteAllInBatch(events);
+        categoryRepository.deleteAllInBatch(categories);
+        userRepository.deleteAllInBatch(users);
+    }
+
+    @Test
+    void publicEventsUseIndex() {
+        assertNoFullScan(() -> eventService.findAll(null, null, null, null, null, null, null, null, null,
+                "EVENT_DATE", 0, 10, null, false, "/events", "127.0.0.1"));
+        assertNoFullScan(() -> eventService.findAll(null, List.of(event.getCategory().getId()), null, now, tomorrow,
+                null, null, null, null, null, 0, 10, null, false, "/events", "127.0.0.1"));
+    }
+
+    @Test
+    void adminEventsUseIndex() {
+        assertNoFullScan(() -> eventService.findByAdmin(null, List.of("PENDING", "CANCELED"), null, now, tomorrow,
+                null, null, null, 0, 10, null, false));
+        assertNoFullScan(() -> eventService.findByAdmin(List.of(event.getInitiator().getId()), null, null, null,
+                null, null, null, null, 0, 10, null, false));
+        assertNoFullScan(() -> eventService.findByAdmin(null, null, List.of(event.getCategory().getId()), null,
+                null, null, null, null, 0, 10, null, false));
+    }
+
+    @Test
+    void initiatorEventsUseIndex() {
+        assertNoFullScan(() -> eventService.findAllPrivate(event.getInitiator().getId(), 0, 10));
+    }
+
+    @Test
+    void eventRequestsUseIndex() {
+        Long initiatorId = event.getInitiator().getId();
+        assertNoFullScan(() -> eventService.findRequestsToEvent(initiatorId, event.getId()));
+        RequestStatusUpdateRequest reject = new RequestStatusUpdateRequest();
+        reject.setRequestIds(requests.stream()
+                .filter(r -> r.getEvent().getId().equals(event.getId()))
+                .map(Request::getId)
+                .collect(Collectors.toList()));
+        reject.setStatus("REJECTED");
+        assertNoFullScan(() -> eventService.updateRequestsStatus(initiatorId, event.getId(), reject));
+    }
+
+    @Test
+    void requesterRequestsUseIndex() {
+        assertNoFullScan(() -> requestService.findByRequesterId(event.getInitiator().getId()));
+    }
+
+    /**
+     * Ни один SELECT, UPDATE или DELETE, выполненный action, не читает таблицу полным просмотром.
+     */
+    private void assertNoFullScan(Runnable action) {
+        List<SqlCapture.Query> queries = sqlCapture.record(action).stream()
+                .filter(q -> q.sql.trim().toLowerCase().matches("^(select|update|delete)\\b[\\s\\S]*"))
+                .collect(Collectors.toList());
+        assertFalse(queries.isEmpty(), "No queries captured");
+        for (SqlCapture.Query query : queries) {
+            String plan = jdbcTemplate.execute((ConnectionCallback<String>) c -> SqlCapture.plan(c, query));
+            assertFalse(plan.contains("tableScan") || plan.contains("Seq Scan"),
+                    () -> "Full scan in plan of " + query + ":\n" + plan);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package ru.practicum.ewmservice;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.customException.ValidationConflictException;
+import ru.practicum.ewmservice.customException.ValidationForbiddenException;
+import ru.practicum.ewmservice.customException.ValidationNotFoundException;
+import ru.practicum.ewmservice.model.Category;
+import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventState;
+import ru.practicum.ewmservice.model.RequestState;
+import ru.practicum.ewmservice.model.User;
+import ru.practicum.ewmservice.model.dto.ParticipationRequestDto;
+import ru.practicum.ewmservice.service.EventService;
+import ru.practicum.ewmservice.service.RequestService;
+import ru.practicum.ewmservice.storage.CategoryRepository;
+import ru.practicum.ewmservice.storage.EventRepository;
+import ru.practicum.ewmservice.storage.RequestRepository;
+import ru.practicum.ewmservice.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Наплыв одновременных заявок на событие с ограниченным числом мест: подтверждённых участников
+ * не больше лимита, счётчик события совпадает с числом подтверждённых заявок.
+ * Подтверждение, отклонение и отмена заявок одного события не взаимоблокируются.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RequestAdmissionConcurrencyTests {
+    private static final int THREADS = 32;
+    private static final int REQUESTERS = 200;
+    private static final int LIMIT = 15;
+
+    @Autowired
+    private RequestService requestService;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private RequestRepository requestRepository;
+    @MockBean
+    private StatsClient statsClient;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private User initiator;
+    private Category category;
+    private final List<User> requesters = new ArrayList<>();
+
+    @BeforeAll
+    void setUp() {
+        initiator = userRepository.save(User.builder()
+                .name("admission initiator")
+                .email("admission.initiator@ewm.ru")
+                .build());
+        category = categoryRepository.save(Category.builder()
+                .name("admission")
+                .build());
+        for (int i = 0; i < REQUESTERS; i++)
+            requesters.add(userRepository.save(User.builder()
+                    .name("admission" + i)
+                    .email("admission" + i + "@ewm.ru")
+                    .build()));
+    }
+
+    @AfterAll
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsWithoutModerationDoNotOversubscribe() throws Exception {
+        Event event = saveEvent(false);
+        List<Callable<ParticipationRequestDto>> tasks = new ArrayList<>();
+        requesters.forEach(requester -> tasks.add(() -> requestService.add(requester.getId(), event.getId())));
+
+        List<Future<ParticipationRequestDto>> results = runAtOnce(tasks);
+
+        assertEquals(LIMIT, succeeded(results));
+        assertEquals(LIMIT, requestRepository.countByEvent_IdAndState(event.getId(), RequestState.CONFIRMED));
+        assertEquals(LIMIT, eventRepository.getConfirmedRequests(event.getId()));
+    }
+
+    @Test
+    void concurrentConfirmationsDoNotOversubscribe() throws Exception {
+        Event event = saveEvent(true);
+        List<Long> requestIds = new ArrayList<>();
+        requesters.forEach(requester -> requestIds.add(requestService.add(requester.getId(), event.getId()).getId()));
+        List<Callable<ParticipationRequestDto>> tasks = new ArrayList<>();
+        // Каждая заявка подтверждается дважды одновременно: повтор не должен занять второе место.
+        requestIds.forEach(reqId -> {
+            tasks.add(() -> eventService.confirmRequestByInitiator(initiator.getId(), event.getId(), reqId));
+            tasks.add(() -> eventService.confirmRequestByInitiator(initiator.getId(), event.getId(), reqId));
+        });
+
+        List<Future<ParticipationRequestDto>> results = runAtOnce(tasks);
+
+        assertEquals(LIMIT, succeeded(results));
+        assertEquals(LIMIT, requestRepository.countByEvent_IdAndState(event.getId(), RequestState.CONFIRMED));
+        assertEquals(LIMIT, eventRepository.getConfirmedRequests(event.getId()));
+        // Остальные заявки отклонены при достижении лимита.
+        assertEquals(0, requestRepository.countByEvent_IdAndState(event.getId(), RequestState.PENDING));
+        assertEquals(REQUESTERS - LIMIT,
+                requestRepository.countByEvent_IdAndState(event.getId(), RequestState.REJECTED));
+    }
+
+    @Test
+    void requestOfAnotherEventIsNotProcessed() {
+        Event event = saveEvent(true);
+        Event other = saveEvent(true);
+        Long reqId = requestService.add(requesters.get(0).getId(), other.getId()).getId();
+
+        assertThrows(ValidationNotFoundException.class,
+                () -> eventService.confirmRequestByInitiator(initiator.getId(), event.getId(), reqId));
+        assertThrows(ValidationNotFoundException.class,
+                () -> eventService.rejectRequestByInitiator(initiator.getId(), event.getId(), reqId));
+        assertThrows(ValidationForbiddenException.class,
+                () -> eventService.rejectRequestByInitiator(requesters.get(1).getId(), other.getId(), reqId));
+        assertEquals(1, requestRepository.countByEvent_IdAndState(other.getId(), RequestState.PENDING));
+    }
+
+    @Test
+    void concurrentRejectAndCancelReleaseSeatOnce() throws Exception {
+        Event event = saveEvent(true);
+        List<Callable<ParticipationRequestDto>> tasks = new ArrayList<>();
+        // Освобождается половина мест: лишнее уменьшение счётчика не скроется его нижней границей.
+        for (User requester : requesters.subList(0, LIMIT)) {
+            Long reqId = requestService.add(requester.getId(), event.getId()).getId();
+            eventService.confirmRequestByInitiator(initiator.getId(), event.getId(), reqId);
+            if (tasks.size() < LIMIT) {
+                tasks.add(() -> eventService.rejectRequestByInitiator(initiator.getId(), event.getId(), reqId));
+                tasks.add(() -> requestService.cancel(requester.getId(), reqId));
+            }
+        }
+
+        succeeded(runAtOnce(tasks));
+
+        long confirmed = requestRepository.countByEvent_IdAndState(event.getId(), RequestState.CONFIRMED);
+        assertEquals(LIMIT - (LIMIT + 1) / 2, confirmed);
+        assertEquals(confirmed, eventRepository.getConfirmedRequests(event.getId()));
+    }
+
+    @Test
+    void mixedConfirmRejectAndCancelKeepCounterConsistent() throws Exception {
+        Event event = saveEvent(true);
+        List<Long> confirmed = new ArrayList<>();
+        List<Long> pending = new ArrayList<>();
+        for (User requester : requesters.subList(0, 2 * LIMIT)) {
+            Long reqId = requestService.add(requester.getId(), event.getId()).getId();
+            if (confirmed.size() < LIMIT / 2) {
+                eventService.confirmRequestByInitiator(initiator.getId(), event.getId(), reqId);
+                confirmed.add(reqId);
+            } else {
+                pending.add(reqId);
+            }
+        }
+        List<Callable<ParticipationRequestDto>> tasks = new ArrayList<>();
+        // Подтверждённые заявки отклоняются и отменяются, часть - одновременно; ожидающие подтверждаются,
+        // часть из них одновременно отклоняется. Все задачи меняют заявки одного события.
+        for (int i = 0; i < confirmed.size(); i++) {
+            Long reqId = confirmed.get(i);
+            User requester = requesters.get(i);
+            if (i % 3 != 2)
+                tasks.add(() -> eventService.rejectRequestByInitiator(initiator.getId(), event.getId(), reqId));
+            if (i % 3 != 1)
+                tasks.add(() -> requestService.cancel(requester.getId(), reqId));
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            Long reqId = pending.get(i);
+            tasks.add(() -> eventService.confirmRequestByInitiator(initiator.getId(), event.getId(), reqId));
+            if (i % 2 == 0)
+                tasks.add(() -> eventService.rejectRequestByInitiator(initiator.getId(), event.getId(), reqId));
+        }
+
+        succeeded(runAtOnce(tasks));
+
+        long confirmedNow = requestRepository.countByEvent_IdAndState(event.getId(), RequestState.CONFIRMED);
+        assertTrue(confirmedNow <= LIMIT);
+        assertEquals(confirmedNow, eventRepository.getConfirmedRequests(event.getId()));
+        // Каждая подтверждённая заявка отклонена или отменена ровно один раз и место освободила один раз.
+        confirmed.forEach(id -> assertNotEquals(RequestState.CONFIRMED,
+                requestRepository.findById(id).orElseThrow().getState()));
+    }
+
+    private Event saveEvent(boolean requestModeration) {
+        return eventRepository.save(Event.builder()
+                .annotation("admission annotation")
+                .description("admission description")
+                .category(category)
+                .initiator(initiator)
+                .createdOn(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS))
+                .eventDate(LocalDateTime.now().plusDays(10).truncatedTo(ChronoUnit.SECONDS))
+                .locationLat(55.75)
+                .locationLon(37.62)
+                .paid(false)
+                .participantLimit(LIMIT)
+                .requestModeration(requestModeration)
+                .state(EventState.PUBLISHED)
+                .title("admission")
+                .build());
+    }
+
+    /**
+     * Запуск всех задач одновременно: потоки ждут общего старта.
+     */
+    private <T> List<Future<T>> runAtOnce(List<Callable<T>> tasks) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> results = new ArrayList<>();
+        tasks.forEach(task -> results.add(executor.submit(() -> {
+            start.await();
+            return task.call();
+        })));
+        start.countDown();
+        return results;
+    }
+
+    /**
+     * Количество успешных задач. Остальные должны завершиться отказом по лимиту или статусу заявки.
+     */
+    private <T> int succeeded(List<Future<T>> results) throws InterruptedException {
+        int succeeded = 0;
+        for (Future<T> result : results) {
+            try {
+                result.get(1, TimeUnit.MINUTES);
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(ValidationConflictException.class, e.getCause());
+            } catch (TimeoutException e) {
+                throw new AssertionError("Admission did not finish in time", e);
+            }
+        }
+        return succeeded;
+    }
+}
@@ -0,0 +1,200 @@
+package ru.practicum.ewmservice;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.practicum.ewmservice.client.StatsClient;
+import ru.practicum.ewmservice.model.Category;
+import ru.practicum.ewmservice.model.Event;
+import ru.practicum.ewmservice.model.EventState;
+import ru.practicum.ewmservice.model.RequestState;
+import ru.practicum.ewmservice.model.User;
+import ru.practicum.ewmservice.service.EventService;
+import ru.practicum.ewmservice.service.RequestService;
+import ru.practicum.ewmservice.storage.CategoryRepository;
+import ru.practicum.ewmservice.storage.EventRepository;
+import ru.practicum.ewmservice.storage.RequestRepository;
+import ru.practicum.ewmservice.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Пакетная обработка заявок PATCH /users/{userId}/events/{eventId}/requests: результат по каждой заявке,
+ * отклонение неподтверждённых заявок при достижении лимита, заявки чужих событий не затрагиваются.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RequestStatusUpdateTests {
+    private static final int REQUESTERS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private RequestService requestService;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private RequestRepository requestRepository;
+    @MockBean
+    private StatsClient statsClient;
+
+    private User initiator;
+    private Category category;
+    private final List<User> requesters = new ArrayList<>();
+
+    @BeforeAll
+    void setUp() {
+        initiator = userRepository.save(User.builder()
+                .name("status initiator")
+                .email("status.initiator@ewm.ru")
+                .build());
+        category = categoryRepository.save(Category.builder()
+                .name("status")
+                .build());
+        for (int i = 0; i < REQUESTERS; i++)
+            requesters.add(userRepository.save(User.builder()
+                    .name("status" + i)
+                    .email("status" + i + "@ewm.ru")
+                    .build()));
+    }
+
+    @Test
+    void partialSuccessReportsEachRequest() throws Exception {
+        Event event = saveEvent(10);
+        List<Long> ids = addRequests(event, 3);
+        eventService.rejectRequestByInitiator(initiator.getId(), event.getId(), ids.get(1));
+
+        updateStatus(event, List.of(ids.get(0), ids.get(1), ids.get(2), ids.get(0)), "CONFIRMED")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].requestId").value(ids.get(0)))
+                .andExpect(jsonPath("$[0].status").value("CONFIRMED"))
+                .andExpect(jsonPath("$[0].updated").value(true))
+                .andExpect(jsonPath("$[0].reason").value(nullValue()))
+                .andExpect(jsonPath("$[1].requestId").value(ids.get(1)))
+                .andExpect(jsonPath("$[1].status").value("REJECTED"))
+                .andExpect(jsonPath("$[1].updated").value(false))
+                .andExpect(jsonPath("$[1].reason").value(containsString("Confirm is not possible")))
+                .andExpect(jsonPath("$[2].status").value("CONFIRMED"))
+                .andExpect(jsonPath("$[2].updated").value(true));
+
+        assertEquals(2, eventRepository.getConfirmedRequests(event.getId()));
+    }
+
+    @Test
+    void limitOverflowRejectsRemainingRequests() throws Exception {
+        Event event = saveEvent(2);
+        List<Long> ids = addRequests(event, 4);
+
+        updateStatus(event, ids.subList(0, 3), "CONFIRMED")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].updated").value(true))
+                .andExpect(jsonPath("$[1].updated").value(true))
+                .andExpect(jsonPath("$[2].status").value("REJECTED"))
+                .andExpect(jsonPath("$[2].updated").value(false))
+                .andExpect(jsonPath("$[2].reason").value("The maximum number of participants has been reached."));
+
+        assertEquals(2, eventRepository.getConfirmedRequests(event.getId()));
+        assertEquals(2, requestRepository.countByEvent_IdAndState(event.getId(), RequestState.CONFIRMED));
+        // Заявка, не попавшая в пакет, отклонена вместе с остальными неподтверждёнными.
+        assertEquals(2, requestRepository.countByEvent_IdAndState(event.getId(), RequestState.REJECTED));
+        assertEquals(0, requestRepository.countByEvent_IdAndState(event.getId(), RequestState.PENDING));
+    }
+
+    @Test
+    void foreignRequestsAreNotFound() throws Exception {
+        Event event = saveEvent(10);
+        Event other = saveEvent(10);
+        Long own = addRequests(event, 1).get(0);
+        Long foreign = addRequests(other, 1).get(0);
+        long missing = foreign + 1000;
+
+        updateStatus(event, List.of(own, foreign, missing), "REJECTED")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("REJECTED"))
+                .andExpect(jsonPath("$[0].updated").value(true))
+                .andExpect(jsonPath("$[1].requestId").value(foreign))
+                .andExpect(jsonPath("$[1].status").value(nullValue()))
+                .andExpect(jsonPath("$[1].updated").value(false))
+                .andExpect(jsonPath("$[1].reason").value(containsString("not found")))
+                .andExpect(jsonPath("$[2].status").value(nullValue()))
+                .andExpect(jsonPath("$[2].updated").value(false));
+
+        assertEquals(1, requestRepository.countByEvent_IdAndState(other.getId(), RequestState.PENDING));
+    }
+
+    @Test
+    void invalidStatusAndForeignInitiatorAreRefused() throws Exception {
+        Event event = saveEvent(10);
+        List<Long> ids = addRequests(event, 1);
+
+        updateStatus(event, ids, "CANCELED")
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/users/{userId}/events/{eventId}/requests", requesters.get(0).getId(), event.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body(ids, "CONFIRMED")))
+                .andExpect(status().isForbidden());
+
+        assertEquals(1, requestRepository.countByEvent_IdAndState(event.getId(), RequestState.PENDING));
+    }
+
+    private ResultActions updateStatus(Event event, List<Long> ids, String status) throws Exception {
+        return mockMvc.perform(patch("/users/{userId}/events/{eventId}/requests", initiator.getId(), event.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(ids, status)));
+    }
+
+    private String body(List<Long> ids, String status) {
+        return String.format("{\"requestIds\": %s, \"status\": \"%s\"}", ids, status);
+    }
+
+    private List<Long> addRequests(Event event, int count) {
+        return requesters.subList(0, count).stream()
+                .map(requester -> requestService.add(requester.getId(), event.getId()).getId())
+                .collect(Collectors.toList());
+    }
+
+    private Event saveEvent(int participantLimit) {
+        return eventRepository.save(Event.builder()
+                .annotation("status annotation")
+                .description("status description")
+                .category(category)
+                .initiator(initiator)
+                .createdOn(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS))
+                .eventDate(LocalDateTime.now().plusDays(10).truncatedTo(ChronoUnit.SECONDS))
+                .locationLat(55.75)
+                .locationLon(37.62)
+                .paid(false)
+                .participantLimit(participantLimit)
+                .requestModeration(true)
+                .state(EventState.PUBLISHED)
+                .title("status")
+                .build());
+    }
+}
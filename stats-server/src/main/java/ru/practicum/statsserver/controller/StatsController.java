@@ -1,17 +1,31 @@
 package ru.practicum.statsserver.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.statsserver.model.StatsQuery;
+import ru.practicum.statsserver.model.dto.BatchHitResponse;
 import ru.practicum.statsserver.model.dto.EndpointHit;
+import ru.practicum.statsserver.model.dto.StatsRequest;
+import ru.practicum.statsserver.model.dto.TimeSeriesPoint;
 import ru.practicum.statsserver.model.dto.ViewStats;
 import ru.practicum.statsserver.service.StatsService;
 
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -19,25 +33,162 @@ import java.util.List;
 @RequiredArgsConstructor
 @Validated
 public class StatsController {
+    private static final String APPROXIMATE_HEADER = "X-Stats-Approximate";
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
-    public void hit(@RequestBody EndpointHit endpointHit) {
+    public void hit(@RequestBody @Valid EndpointHit endpointHit) {
         log.info("Statistics еndpoint 'Save hit'. " +
                 "endpointHit={}.", endpointHit);
         statsService.hit(endpointHit);
     }
 
+    /**
+     * Пакетная запись хитов: JSON-массив или NDJSON (один хит на строку).
+     * Некорректные элементы отклоняются поштучно, остальные записываются.
+     */
+    @PostMapping(value = "/hit/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BatchHitResponse hitBatch(@RequestBody List<JsonNode> items) {
+        log.info("Statistics еndpoint 'Save hits batch'. " +
+                "size={}.", items.size());
+        return statsService.hitAll(items);
+    }
+
+    @PostMapping(value = "/hit/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BatchHitResponse hitBatchNdjson(@RequestBody String body) {
+        List<JsonNode> items = new ArrayList<>();
+        body.lines()
+                .filter(line -> !line.isBlank())
+                .forEach(line -> {
+                    try {
+                        items.add(objectMapper.readTree(line));
+                    } catch (JsonProcessingException e) {
+                        items.add(null);
+                    }
+                });
+        log.info("Statistics еndpoint 'Save hits batch', NDJSON. " +
+                "size={}.", items.size());
+        return statsService.hitAll(items);
+    }
+
+    /**
+     * Статистика по посещениям.
+     * При unique=true и approximate=true число уникальных IP оценивается по скетчам HyperLogLog,
+     * о чём сообщает заголовок ответа X-Stats-Approximate.
+     */
     @GetMapping("/stats")
-    public List<ViewStats> findAll(
+    public ResponseEntity<List<ViewStats>> findAll(
             @RequestParam String start,
             @RequestParam String end,
             @RequestParam(required = false) String app,
             @RequestParam(required = false) List<String> uris,
-            @RequestParam(required = false, defaultValue = "false") Boolean unique
+            @RequestParam(required = false, defaultValue = "false") Boolean unique,
+            @RequestParam(required = false, defaultValue = "false") Boolean approximate
     ) {
         log.info("Statistics еndpoint 'Get statistics'. " +
-                "start={}, end={}, app={}, uris={}, unique={}.", start, end, app, uris, unique);
-        return statsService.findAll(start, end, app, uris, unique);
+                        "start={}, end={}, app={}, uris={}, unique={}, approximate={}.",
+                start, end, app, uris, unique, approximate);
+        List<ViewStats> result = statsService.findAll(start, end, app, uris, unique, approximate);
+        return ResponseEntity.ok()
+                .header(APPROXIMATE_HEADER, String.valueOf(unique && approximate))
+                .body(result);
+    }
+
+    /**
+     * Статистика по параметрам GET /stats, переданным в теле запроса.
+     * Для длинных списков uris, которые не помещаются в строку запроса.
+     */
+    @PostMapping("/stats/query")
+    public ResponseEntity<List<ViewStats>> findAllByRequest(@RequestBody @Valid StatsRequest request) {
+        log.info("Statistics еndpoint 'Get statistics', POST. " +
+                        "start={}, end={}, app={}, uris count={}, unique={}, approximate={}.",
+                request.getStart(), request.getEnd(), request.getApp(),
+                request.getUris() == null ? null : request.getUris().size(), request.isUnique(),
+                request.isApproximate());
+        List<ViewStats> result = statsService.findAll(request);
+        return ResponseEntity.ok()
+                .header(APPROXIMATE_HEADER, String.valueOf(request.isUnique() && request.isApproximate()))
+                .body(result);
+    }
+
+    /**
+     * Временной ряд: хиты по каждому URI в корзинах interval (MINUTE, HOUR или DAY) за диапазон [start, end].
+     * При unique=true в корзине считаются уникальные IP.
+     */
+    @GetMapping("/stats/timeseries")
+    public List<TimeSeriesPoint> findTimeSeries(
+            @RequestParam String start,
+            @RequestParam String end,
+            @RequestParam String interval,
+            @RequestParam(required = false) String app,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(required = false, defaultValue = "false") Boolean unique
+    ) {
+        log.info("Statistics еndpoint 'Get time series'. " +
+                        "start={}, end={}, interval={}, app={}, uris={}, unique={}.",
+                start, end, interval, app, uris, unique);
+        return statsService.findTimeSeries(start, end, interval, app, uris, unique);
+    }
+
+    /**
+     * limit самых посещаемых URI за диапазон [start, end] по убыванию числа хитов,
+     * с необязательными фильтрами по сервису и началу URI (prefix).
+     */
+    @GetMapping("/stats/top")
+    public ResponseEntity<List<ViewStats>> findTop(
+            @RequestParam String start,
+            @RequestParam String end,
+            @RequestParam(required = false, defaultValue = "10") Integer limit,
+            @RequestParam(required = false) String app,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false, defaultValue = "false") Boolean unique,
+            @RequestParam(required = false, defaultValue = "false") Boolean approximate
+    ) {
+        log.info("Statistics еndpoint 'Get top'. " +
+                        "start={}, end={}, limit={}, app={}, prefix={}, unique={}, approximate={}.",
+                start, end, limit, app, prefix, unique, approximate);
+        List<ViewStats> result = statsService.findTop(start, end, app, prefix, limit, unique, approximate);
+        return ResponseEntity.ok()
+                .header(APPROXIMATE_HEADER, String.valueOf(unique && approximate))
+                .body(result);
+    }
+
+    /**
+     * Статистика в формате NDJSON (Accept: application/x-ndjson): одна группа на строку.
+     * Группы пишутся в ответ по мере чтения из БД, поэтому память не зависит от их числа.
+     * Параметры проверяются до начала ответа: ошибка в них возвращается статусом, а не обрывом потока.
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> findAllNdjson(
+            @RequestParam String start,
+            @RequestParam String end,
+            @RequestParam(required = false) String app,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(required = false, defaultValue = "false") Boolean unique,
+            @RequestParam(required = false, defaultValue = "false") Boolean approximate
+    ) {
+        log.info("Statistics еndpoint 'Get statistics', NDJSON. " +
+                        "start={}, end={}, app={}, uris={}, unique={}, approximate={}.",
+                start, end, app, uris, unique, approximate);
+        StatsQuery query = statsService.parseQuery(start, end, app, uris, unique, approximate);
+        StreamingResponseBody body = out -> {
+            try {
+                statsService.streamAll(query, viewStats -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(viewStats));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(APPROXIMATE_HEADER, String.valueOf(unique && approximate))
+                .body(body);
     }
 }
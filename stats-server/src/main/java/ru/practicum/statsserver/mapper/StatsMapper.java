@@ -3,14 +3,18 @@ package ru.practicum.statsserver.mapper;
 import ru.practicum.statsserver.model.StatsRecord;
 import ru.practicum.statsserver.model.dto.EndpointHit;
 
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 public class StatsMapper {
 
-    public static StatsRecord toStatRecord(EndpointHit hit) {
+    public static StatsRecord toStatRecord(EndpointHit hit, int appId, long uriId, byte[] ip) {
         return StatsRecord.builder()
-                .app(hit.getApp())
-                .uri(hit.getUri())
-                .ip(hit.getIp())
-                .timestamp(hit.getTimestamp())
+                .appId(appId)
+                .uriId(uriId)
+                .ip(ip)
+                // Запись асинхронная, ошибку NOT NULL клиенту уже не вернуть. Поэтому время по умолчанию - текущее.
+                .timestamp(Optional.ofNullable(hit.getTimestamp()).orElse(LocalDateTime.now()))
                 .build();
     }
 
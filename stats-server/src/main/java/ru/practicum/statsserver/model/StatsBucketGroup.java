@@ -0,0 +1,22 @@
+package ru.practicum.statsserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Количество хитов по группе (app_id, uri_id) за одну корзину временного ряда, до расшифровки словарями.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsBucketGroup {
+    private Integer appId;
+    private Long uriId;
+    private LocalDateTime bucket;
+    private Long hits;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.statsserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Количество хитов по группе (app_id, uri_id) - результат агрегирующих запросов до расшифровки словарями.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsGroup {
+    private Integer appId;
+    private Long uriId;
+    private Long hits;
+}
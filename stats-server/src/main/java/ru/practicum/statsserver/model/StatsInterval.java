@@ -0,0 +1,50 @@
+package ru.practicum.statsserver.model;
+
+import com.querydsl.core.types.dsl.DateTimeExpression;
+import com.querydsl.core.types.dsl.Expressions;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Размер корзины временного ряда статистики. Начало корзины в запросе вычисляет
+ * HQL-функция из StatsFunctionsContributor.
+ */
+public enum StatsInterval {
+    MINUTE(ChronoUnit.MINUTES, "trunc_minute"),
+    HOUR(ChronoUnit.HOURS, "trunc_hour"),
+    DAY(ChronoUnit.DAYS, "trunc_day");
+
+    private final ChronoUnit unit;
+    private final String function;
+
+    StatsInterval(ChronoUnit unit, String function) {
+        this.unit = unit;
+        this.function = function;
+    }
+
+    /**
+     * @return null, если такого интервала нет.
+     */
+    public static StatsInterval convert(String interval) {
+        for (StatsInterval value : values()) {
+            if (value.name().equalsIgnoreCase(interval))
+                return value;
+        }
+        return null;
+    }
+
+    /**
+     * Начало корзины, в которую попадает момент времени, в запросе.
+     */
+    public DateTimeExpression<LocalDateTime> truncate(DateTimeExpression<LocalDateTime> time) {
+        return Expressions.dateTimeTemplate(LocalDateTime.class, "function('" + function + "', {0})", time);
+    }
+
+    /**
+     * Количество корзин, которые задевает диапазон [start, end].
+     */
+    public long buckets(LocalDateTime start, LocalDateTime end) {
+        return unit.between(start.truncatedTo(unit), end.truncatedTo(unit)) + 1;
+    }
+}
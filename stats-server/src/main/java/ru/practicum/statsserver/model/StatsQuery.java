@@ -0,0 +1,38 @@
+package ru.practicum.statsserver.model;
+
+import lombok.Value;
+import lombok.With;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Проверенные параметры запроса статистики: диапазон разобран, app и uris заменены ключами словарей.
+ */
+@Value
+public class StatsQuery {
+    LocalDateTime start;
+    LocalDateTime end;
+    Integer appId;
+    /**
+     * Null - без фильтра по URI или ключи записаны во временную таблицу (urisStaged).
+     */
+    @With
+    List<Long> uriIds;
+    /**
+     * Ключи URI записаны во временную таблицу stats_query_uris текущей транзакции.
+     */
+    @With
+    boolean urisStaged;
+    /**
+     * Null - без фильтра по началу URI.
+     */
+    @With
+    String uriPrefix;
+    boolean unique;
+    boolean approximate;
+    /**
+     * Сервиса или URI нет в словаре - хитов по ним заведомо не было.
+     */
+    boolean none;
+}
@@ -0,0 +1,24 @@
+package ru.practicum.statsserver.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Ключи URI большого запроса статистики во временной таблице сессии БД.
+ * Таблицу создаёт и заполняет StatsQueryUriRepository, сущность нужна только для подзапросов QueryDSL.
+ */
+@Entity
+@Table(name = "stats_query_uris")
+@Getter
+@NoArgsConstructor
+public class StatsQueryUri {
+
+    @Id
+    @Column(name = "uri_id")
+    private Long uriId;
+}
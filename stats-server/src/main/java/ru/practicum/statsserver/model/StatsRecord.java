@@ -31,14 +31,17 @@ public class StatsRecord {
     @Column(name = "id")
     private Long id;
 
-    @Column(name = "app")
-    private String app;
+    @Column(name = "app_id")
+    private Integer appId;
 
-    @Column(name = "uri")
-    private String uri;
+    @Column(name = "uri_id")
+    private Long uriId;
 
+    /**
+     * IPv4 - 4 байта, IPv6 - 16 байт, прочие строки - байты UTF-8, см. IpAddressCodec.
+     */
     @Column(name = "ip")
-    private String ip;
+    private byte[] ip;
 
     @Column(name = "timestamp")
     @DateTimeFormat(pattern = DATE_PATTERN)
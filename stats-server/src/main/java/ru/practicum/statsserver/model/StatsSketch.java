@@ -0,0 +1,61 @@
+package ru.practicum.statsserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import static ru.practicum.statsserver.util.Constants.DATE_PATTERN;
+
+/**
+ * Скетч HyperLogLog уникальных IP для (app_id, uri_id) за сутки.
+ * Ведётся инкрементально при записи хитов, см. HitBatchRepository.
+ */
+@Entity
+@Table(name = "statistics_hll")
+@IdClass(StatsSketch.Key.class)
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatsSketch {
+
+    @Id
+    @Column(name = "bucket")
+    @DateTimeFormat(pattern = DATE_PATTERN)
+    private LocalDateTime bucket;
+
+    @Id
+    @Column(name = "app_id")
+    private Integer appId;
+
+    @Id
+    @Column(name = "uri_id")
+    private Long uriId;
+
+    @Column(name = "sketch")
+    private byte[] sketch;
+
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDateTime bucket;
+        private Integer appId;
+        private Long uriId;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum.statsserver.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Результат пакетной записи хитов: сколько принято и какие элементы отклонены.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchHitResponse {
+    private Integer accepted;
+    private List<Rejected> rejected;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rejected {
+        private Integer index;   // Позиция элемента в пакете, с нуля.
+        private String message;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.practicum.statsserver.model.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.validation.constraints.NotBlank;
+import java.util.List;
+
+/**
+ * Параметры POST /stats/query - те же, что у GET /stats, но в теле запроса.
+ */
+@Getter
+@Setter
+@ToString
+public class StatsRequest {
+
+    @NotBlank
+    private String start;
+
+    @NotBlank
+    private String end;
+
+    private String app;
+
+    private List<String> uris;
+
+    private boolean unique;
+
+    private boolean approximate;
+}
@@ -0,0 +1,28 @@
+package ru.practicum.statsserver.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+import static ru.practicum.statsserver.util.Constants.DATE_PATTERN;
+
+/**
+ * Количество хитов по URI за одну корзину временного ряда. bucket - начало корзины.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesPoint {
+    private String app;
+    private String uri;
+    @JsonFormat(pattern = DATE_PATTERN)
+    private LocalDateTime bucket;
+    private Long hits;
+}
@@ -0,0 +1,184 @@
+package ru.practicum.statsserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.statsserver.model.StatsRecord;
+import ru.practicum.statsserver.storage.HitBatchRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронный приём хитов.
+ * Хиты складываются в ограниченную очередь, фоновый поток выгребает её пачками
+ * и пишет в БД одним JDBC batch. Пачка уходит при наборе batch-size или по истечении flush-interval.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class HitIngestionService {
+    private final HitBatchRepository hitBatchRepository;
+    private final MeterRegistry meterRegistry;
+    @Value("${stats.ingest.queue-capacity}")
+    int queueCapacity;
+    @Value("${stats.ingest.batch-size}")
+    int batchSize;
+    @Value("${stats.ingest.flush-interval-ms}")
+    long flushIntervalMs;
+    // Хит пишется в потоке запроса, и следующий GET /stats его уже видит.
+    @Value("${stats.ingest.synchronous}")
+    boolean synchronous;
+
+    private BlockingQueue<StatsRecord> queue;
+    private Thread writer;
+    private volatile boolean running;
+    private Timer flushTimer;
+    private Counter writtenCounter;
+    private Counter failedCounter;
+    private Counter overflowCounter;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("stats.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Hits waiting to be written")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("stats.ingest.flush")
+                .description("Time to write one batch of hits")
+                .register(meterRegistry);
+        writtenCounter = meterRegistry.counter("stats.ingest.hits.written");
+        failedCounter = meterRegistry.counter("stats.ingest.hits.failed");
+        overflowCounter = meterRegistry.counter("stats.ingest.hits.overflow");
+        hitBatchRepository.backfillSketches();
+        running = true;
+        writer = new Thread(this::writeLoop, "stats-hit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Поставить хит в очередь на запись.
+     * Если очередь переполнена или приём уже остановлен (stop()), хит пишется синхронно в потоке вызывающего,
+     * чтобы не терять данные.
+     * С stats.ingest.synchronous хит пишется сразу, ошибка записи пробрасывается вызывающему.
+     */
+    public void submit(StatsRecord record) {
+        if (synchronous) {
+            writeAll(List.of(record));
+            return;
+        }
+        if (running && queue.offer(record)) {
+            // stop() мог выгрести очередь между проверкой running и offer: тогда хит пишется здесь.
+            // Если хита в очереди уже нет, его забрал фоновый поток или stop().
+            if (!running && queue.remove(record))
+                write(List.of(record));
+            return;
+        }
+        if (running)
+            overflowCounter.increment();
+        write(List.of(record));
+    }
+
+    /**
+     * Синхронная запись пачки хитов одной транзакцией, в обход очереди.
+     * Ошибка записи пробрасывается вызывающему.
+     */
+    public void writeAll(List<StatsRecord> records) {
+        if (records.isEmpty())
+            return;
+        persist(records);
+        writtenCounter.increment(records.size());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        // Дописываем всё, что осталось в очереди после остановки фонового потока.
+        List<StatsRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+        log.info("Hit writer stopped, queue drained.");
+    }
+
+    private void writeLoop() {
+        List<StatsRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                StatsRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0)
+                        break;
+                    StatsRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Остановка. Недописанная пачка уходит ниже, остаток очереди - в stop().
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Запись пачки из очереди. Если пачка не записалась, хиты пишутся по одному,
+     * чтобы из-за одного некорректного хита не терять всю пачку.
+     */
+    private void write(List<StatsRecord> batch) {
+        try {
+            persist(batch);
+            writtenCounter.increment(batch.size());
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+            log.warn("Failed to write a batch of {} hit(s), writing them one by one: {}", batch.size(),
+                    e.getMessage());
+        }
+        for (StatsRecord record : batch) {
+            try {
+                persist(List.of(record));
+                writtenCounter.increment();
+            } catch (RuntimeException e) {
+                fail(record, e);
+            }
+        }
+    }
+
+    private void fail(StatsRecord record, RuntimeException e) {
+        failedCounter.increment();
+        log.error("Failed to write hit app_id={}, uri_id={}, timestamp={}.", record.getAppId(), record.getUriId(),
+                record.getTimestamp(), e);
+    }
+
+    private void persist(List<StatsRecord> batch) {
+        flushTimer.record(() -> hitBatchRepository.saveAll(batch));
+    }
+}
@@ -0,0 +1,167 @@
+package ru.practicum.statsserver.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Обслуживание таблицы хитов statistics.
+ * На PostgreSQL с секционированной таблицей заранее создаёт секции по дням или месяцам
+ * и отсоединяет/удаляет секции старше срока хранения.
+ * Иначе (H2, несекционированная таблица) срок хранения выдерживается удалением строк.
+ * Агрегаты statistics_rollup и statistics_hll срок хранения не затрагивает.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PartitionMaintenanceService {
+    private static final String PARTITION_PREFIX = "statistics_p";
+    // Хиты с временем за пределами созданных секций (например, присланные клиентом из будущего) лежат в секции
+    // по умолчанию, и секцию с их диапазоном не создать. Они переносятся в новую секцию одним блоком:
+    // при ошибке ни строки, ни секция не меняются.
+    private static final String CREATE_PARTITION = "DO '\n" +
+            "BEGIN\n" +
+            "    CREATE TEMP TABLE statistics_moved ON COMMIT DROP AS\n" +
+            "        SELECT id, app_id, uri_id, ip, timestamp FROM statistics_default\n" +
+            "        WHERE timestamp >= ''%1$s'' AND timestamp < ''%2$s'';\n" +
+            "    DELETE FROM statistics_default WHERE timestamp >= ''%1$s'' AND timestamp < ''%2$s'';\n" +
+            "    CREATE TABLE %3$s PARTITION OF statistics FOR VALUES FROM (''%1$s'') TO (''%2$s'');\n" +
+            "    INSERT INTO statistics (id, app_id, uri_id, ip, timestamp)\n" +
+            "        SELECT id, app_id, uri_id, ip, timestamp FROM statistics_moved;\n" +
+            "    DROP TABLE statistics_moved;\n" +
+            "END'";
+
+    private final JdbcTemplate jdbcTemplate;
+    @Value("${stats.partition.granularity}")
+    Granularity granularity;
+    @Value("${stats.partition.premake}")
+    int premake;
+    @Value("${stats.retention.days}")
+    int retentionDays;
+    @Value("${stats.retention.mode}")
+    RetentionMode retentionMode;
+
+    public enum Granularity {
+        DAY(ChronoUnit.DAYS, "yyyyMMdd"),
+        MONTH(ChronoUnit.MONTHS, "yyyyMM");
+
+        private final ChronoUnit unit;
+        private final DateTimeFormatter suffix;
+
+        Granularity(ChronoUnit unit, String suffixPattern) {
+            this.unit = unit;
+            this.suffix = DateTimeFormatter.ofPattern(suffixPattern);
+        }
+
+        LocalDate floor(LocalDate date) {
+            return this == MONTH ? date.withDayOfMonth(1) : date;
+        }
+    }
+
+    public enum RetentionMode {
+        DETACH, // Секция отсоединяется и остаётся отдельной таблицей, например для архивации.
+        DROP
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${stats.partition.cron}")
+    public void maintain() {
+        try {
+            if (isPartitioned()) {
+                createPartitions();
+                if (retentionDays > 0)
+                    dropExpiredPartitions();
+            } else if (retentionDays > 0) {
+                deleteExpiredRows("statistics");
+            }
+        } catch (DataAccessException e) {
+            log.error("Statistics partition maintenance failed.", e);
+        }
+    }
+
+    private boolean isPartitioned() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c ->
+                c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product))
+            return false;
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = 'statistics'::regclass",
+                Integer.class);
+        return count != null && count > 0;
+    }
+
+    private void createPartitions() {
+        LocalDate from = granularity.floor(LocalDate.now());
+        for (int i = 0; i <= premake; i++) {
+            LocalDate start = from.plus(i, granularity.unit);
+            LocalDate end = start.plus(1, granularity.unit);
+            String name = PARTITION_PREFIX + start.format(granularity.suffix);
+            Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+            if (Boolean.TRUE.equals(exists))
+                continue;
+            try {
+                jdbcTemplate.execute(String.format(CREATE_PARTITION, start.atStartOfDay(), end.atStartOfDay(), name));
+            } catch (DataAccessException e) {
+                log.warn("Cannot create partition {}: {}", name, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private void dropExpiredPartitions() {
+        LocalDate threshold = LocalDate.now().minusDays(retentionDays);
+        List<String> partitions = jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = 'statistics'::regclass AND c.relname LIKE '" + PARTITION_PREFIX + "%'",
+                String.class);
+        for (String name : partitions) {
+            LocalDate end = parseEnd(name);
+            if (end == null || end.isAfter(threshold))
+                continue;
+            jdbcTemplate.execute("ALTER TABLE statistics DETACH PARTITION " + name);
+            if (retentionMode == RetentionMode.DROP)
+                jdbcTemplate.execute("DROP TABLE " + name);
+            log.info("Statistics partition {} expired: {}.", name, retentionMode);
+        }
+        // В секцию по умолчанию попадают хиты вне заранее созданных диапазонов, её чистим построчно.
+        deleteExpiredRows("statistics_default");
+    }
+
+    /**
+     * Конец диапазона секции по её имени. Гранулярность определяется по длине суффикса,
+     * так что секции, созданные до смены stats.partition.granularity, тоже обслуживаются.
+     */
+    private LocalDate parseEnd(String partition) {
+        String suffix = partition.substring(PARTITION_PREFIX.length());
+        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyyMMdd");
+        try {
+            if (suffix.length() == 6)
+                return LocalDate.parse(suffix + "01", dtf).plusMonths(1);
+            return LocalDate.parse(suffix, dtf).plusDays(1);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private void deleteExpiredRows(String table) {
+        LocalDateTime threshold = LocalDate.now().minusDays(retentionDays).atStartOfDay();
+        int deleted = jdbcTemplate.update("DELETE FROM " + table + " WHERE timestamp < ?",
+                Timestamp.valueOf(threshold));
+        if (deleted > 0)
+            log.info("Deleted {} expired hit(s) older than {} from {}.", deleted, threshold, table);
+    }
+}
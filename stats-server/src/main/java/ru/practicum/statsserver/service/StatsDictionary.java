@@ -0,0 +1,212 @@
+package ru.practicum.statsserver.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import ru.practicum.statsserver.model.StatsApp;
+import ru.practicum.statsserver.model.StatsUri;
+import ru.practicum.statsserver.storage.StatsAppRepository;
+import ru.practicum.statsserver.storage.StatsUriRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кэш словарей app и uri.
+ * Хиты и агрегаты хранят суррогатные ключи, строки подставляются только в ответах.
+ * Записи словаря неизменяемы, поэтому кэш не инвалидируется.
+ * Каждое направление хранит не больше stats.dictionary.max-size записей, при переполнении вытесняются
+ * давно не читавшиеся: число URI не ограничено, и без предела кэш рос бы вместе со словарём.
+ */
+@Service
+@RequiredArgsConstructor
+public class StatsDictionary {
+    private static final int LOAD_CHUNK = 1000;
+    private final StatsAppRepository statsAppRepository;
+    private final StatsUriRepository statsUriRepository;
+    @Value("${stats.dictionary.max-size}")
+    int maxSize;
+    private Map<String, Integer> appIds;
+    private Map<Integer, String> appNames;
+    private Map<String, Long> uriIds;
+    private Map<Long, String> uriValues;
+
+    @PostConstruct
+    void init() {
+        appIds = lru();
+        appNames = lru();
+        uriIds = lru();
+        uriValues = lru();
+    }
+
+    /**
+     * Ключ сервиса. Отсутствующий в словаре сервис добавляется.
+     */
+    public int appId(String name) {
+        Integer id = appIds.get(name);
+        if (id != null)
+            return id;
+        StatsApp app = statsAppRepository.findByName(name)
+                .orElseGet(() -> {
+                    try {
+                        return statsAppRepository.save(StatsApp.builder().name(name).build());
+                    } catch (DataIntegrityViolationException e) {
+                        // Параллельно добавлен другим потоком или экземпляром сервера.
+                        return statsAppRepository.findByName(name).orElseThrow(() -> e);
+                    }
+                });
+        cacheApp(app);
+        return app.getId();
+    }
+
+    /**
+     * Ключ URI. Отсутствующий в словаре URI добавляется.
+     */
+    public long uriId(String uri) {
+        Long id = uriIds.get(uri);
+        if (id != null)
+            return id;
+        StatsUri statsUri = statsUriRepository.findByUri(uri)
+                .orElseGet(() -> {
+                    try {
+                        return statsUriRepository.save(StatsUri.builder().uri(uri).build());
+                    } catch (DataIntegrityViolationException e) {
+                        return statsUriRepository.findByUri(uri).orElseThrow(() -> e);
+                    }
+                });
+        cacheUri(statsUri);
+        return statsUri.getId();
+    }
+
+    /**
+     * Ключ сервиса для поиска, без добавления в словарь.
+     *
+     * @return null, если хитов этого сервиса не было.
+     */
+    public Integer findAppId(String name) {
+        Integer id = appIds.get(name);
+        if (id != null)
+            return id;
+        return statsAppRepository.findByName(name)
+                .map(app -> {
+                    cacheApp(app);
+                    return app.getId();
+                })
+                .orElse(null);
+    }
+
+    /**
+     * Ключи URI для поиска, без добавления в словарь. URI, по которым хитов не было, пропускаются.
+     * Отсутствующие в кэше URI запрашиваются порциями по LOAD_CHUNK.
+     */
+    public List<Long> findUriIds(Collection<String> uris) {
+        List<Long> result = new ArrayList<>(uris.size());
+        List<String> missing = new ArrayList<>();
+        for (String uri : uris) {
+            Long id = uriIds.get(uri);
+            if (id != null)
+                result.add(id);
+            else
+                missing.add(uri);
+        }
+        for (int from = 0; from < missing.size(); from += LOAD_CHUNK) {
+            statsUriRepository.findByUriIn(missing.subList(from, Math.min(from + LOAD_CHUNK, missing.size())))
+                    .forEach(u -> {
+                        cacheUri(u);
+                        result.add(u.getId());
+                    });
+        }
+        return result;
+    }
+
+    public String appName(Integer appId) {
+        String name = appNames.get(appId);
+        if (name != null)
+            return name;
+        StatsApp app = statsAppRepository.findById(appId)
+                .orElseThrow(() -> new IllegalStateException(String.format("Unknown app_id=%s", appId)));
+        cacheApp(app);
+        return app.getName();
+    }
+
+    /**
+     * Значения URI для пачки ключей с записью в кэш, чтобы не расшифровывать URI по одному.
+     * Запросы - порциями по LOAD_CHUNK ключей: у PostgreSQL не больше 32767 параметров на запрос.
+     */
+    public Map<Long, String> uris(Collection<Long> ids) {
+        Map<Long, String> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new HashSet<>(ids)) {
+            String uri = uriValues.get(id);
+            if (uri != null)
+                result.put(id, uri);
+            else
+                missing.add(id);
+        }
+        for (int from = 0; from < missing.size(); from += LOAD_CHUNK)
+            statsUriRepository.findDetachedByIdIn(missing.subList(from, Math.min(from + LOAD_CHUNK, missing.size())))
+                    .forEach(u -> {
+                        cacheUri(u);
+                        result.put(u.getId(), u.getUri());
+                    });
+        checkLoaded(missing, result);
+        return result;
+    }
+
+    /**
+     * Значения URI для порции ключей без записи в кэш: для потоковой выдачи, где число разных URI не ограничено
+     * и кэш рос бы вместе с ответом. Уже закэшированные значения берутся из кэша.
+     */
+    public Map<Long, String> findUris(Collection<Long> ids) {
+        Map<Long, String> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new HashSet<>(ids)) {
+            String uri = uriValues.get(id);
+            if (uri != null)
+                result.put(id, uri);
+            else
+                missing.add(id);
+        }
+        for (int from = 0; from < missing.size(); from += LOAD_CHUNK)
+            statsUriRepository.findDetachedByIdIn(missing.subList(from, Math.min(from + LOAD_CHUNK, missing.size())))
+                    .forEach(u -> result.put(u.getId(), u.getUri()));
+        checkLoaded(missing, result);
+        return result;
+    }
+
+    private void checkLoaded(List<Long> ids, Map<Long, String> loaded) {
+        ids.stream()
+                .filter(id -> !loaded.containsKey(id))
+                .findAny()
+                .ifPresent(id -> {
+                    throw new IllegalStateException(String.format("Unknown uri_id=%s", id));
+                });
+    }
+
+    private void cacheApp(StatsApp app) {
+        appIds.put(app.getName(), app.getId());
+        appNames.put(app.getId(), app.getName());
+    }
+
+    private void cacheUri(StatsUri uri) {
+        uriIds.put(uri.getUri(), uri.getId());
+        uriValues.put(uri.getId(), uri.getUri());
+    }
+
+    private <K, V> Map<K, V> lru() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+}
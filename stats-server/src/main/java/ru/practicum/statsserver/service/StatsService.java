@@ -1,34 +1,173 @@
 package ru.practicum.statsserver.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.JPAExpressions;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.statsserver.customException.ValidationDataException;
 import ru.practicum.statsserver.mapper.StatsMapper;
+import ru.practicum.statsserver.model.QStatsQueryUri;
 import ru.practicum.statsserver.model.QStatsRecord;
+import ru.practicum.statsserver.model.QStatsRollup;
+import ru.practicum.statsserver.model.QStatsSketch;
+import ru.practicum.statsserver.model.QStatsUri;
+import ru.practicum.statsserver.model.RollupGranularity;
+import ru.practicum.statsserver.model.StatsBucketGroup;
+import ru.practicum.statsserver.model.StatsGroup;
+import ru.practicum.statsserver.model.StatsInterval;
+import ru.practicum.statsserver.model.StatsQuery;
+import ru.practicum.statsserver.model.StatsRecord;
+import ru.practicum.statsserver.model.StatsSketch;
+import ru.practicum.statsserver.model.dto.BatchHitResponse;
 import ru.practicum.statsserver.model.dto.EndpointHit;
+import ru.practicum.statsserver.model.dto.StatsRequest;
+import ru.practicum.statsserver.model.dto.TimeSeriesPoint;
 import ru.practicum.statsserver.model.dto.ViewStats;
+import ru.practicum.statsserver.storage.StatsQueryUriRepository;
 import ru.practicum.statsserver.storage.StatsRepository;
+import ru.practicum.statsserver.util.HyperLogLog;
+import ru.practicum.statsserver.util.IpAddressCodec;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static ru.practicum.statsserver.util.Constants.DATE_PATTERN;
 
 @Service
 @RequiredArgsConstructor
 public class StatsService {
+    // Групп в одной порции расшифровки словарями при потоковой выдаче.
+    private static final int STREAM_CHUNK = 500;
+    // Порядок топа: по числу хитов, при равенстве - по ключам, чтобы ответ не зависел от порядка чтения.
+    private static final Comparator<StatsGroup> TOP_ORDER = Comparator.comparing(StatsGroup::getHits)
+            .thenComparing(StatsGroup::getAppId, Comparator.reverseOrder())
+            .thenComparing(StatsGroup::getUriId, Comparator.reverseOrder());
     private final StatsRepository statsRepository;
+    private final HitIngestionService hitIngestionService;
+    private final StatsDictionary statsDictionary;
+    private final StatsQueryUriRepository statsQueryUriRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    @Value("${stats.hll.precision}")
+    int hllPrecision;
+    @Value("${stats.ingest.max-batch-size}")
+    int maxBatchSize;
+    @Value("${stats.timeseries.max-buckets}")
+    long maxTimeSeriesBuckets;
+    @Value("${stats.top.max-limit}")
+    int maxTopLimit;
+    @Value("${stats.query.staging-threshold}")
+    int stagingThreshold;
 
     public void hit(EndpointHit hit) {
-        statsRepository.save(StatsMapper.toStatRecord(hit));
+        hitIngestionService.submit(toStatRecord(hit, IpAddressCodec.toBytes(hit.getIp())));
     }
 
-    public List<ViewStats> findAll(String start, String end, String app, List<String> uris, Boolean unique) {
+    /**
+     * Пакетная запись хитов. Элементы проверяются по отдельности, некорректные отклоняются
+     * с указанием позиции, остальные записываются одной транзакцией.
+     *
+     * @param items Элементы пакета. Null - элемент, который не удалось разобрать как JSON.
+     */
+    public BatchHitResponse hitAll(List<JsonNode> items) {
+        if (items.size() > maxBatchSize)
+            throw new ValidationDataException(String.format("Batch size %s exceeds the limit of %s",
+                    items.size(), maxBatchSize));
+        List<StatsRecord> records = new ArrayList<>(items.size());
+        List<BatchHitResponse.Rejected> rejected = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            JsonNode item = items.get(i);
+            if (item == null || !item.isObject()) {
+                rejected.add(new BatchHitResponse.Rejected(i, "Item is not a JSON object."));
+                continue;
+            }
+            EndpointHit hit;
+            try {
+                hit = objectMapper.treeToValue(item, EndpointHit.class);
+            } catch (JsonProcessingException e) {
+                rejected.add(new BatchHitResponse.Rejected(i, e.getOriginalMessage()));
+                continue;
+            }
+            Set<ConstraintViolation<EndpointHit>> violations = validator.validate(hit);
+            if (!violations.isEmpty()) {
+                rejected.add(new BatchHitResponse.Rejected(i, violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .collect(Collectors.toList()).toString()));
+                continue;
+            }
+            records.add(toStatRecord(hit, IpAddressCodec.toBytes(hit.getIp())));
+        }
+        hitIngestionService.writeAll(records);
+        return new BatchHitResponse(records.size(), rejected);
+    }
+
+    public List<ViewStats> findAll(String start, String end, String app, List<String> uris, Boolean unique,
+                                   Boolean approximate) {
+        return find(parseQuery(start, end, app, uris, unique, approximate));
+    }
+
+    /**
+     * Статистика по параметрам из тела запроса, для списков URI, не помещающихся в строку запроса.
+     * Если ключей URI больше stats.query.staging-threshold, они записываются во временную таблицу
+     * и отбираются подзапросом к ней, а не списком IN.
+     */
+    @Transactional
+    public List<ViewStats> findAll(StatsRequest request) {
+        StatsQuery query = parseQuery(request.getStart(), request.getEnd(), request.getApp(), request.getUris(),
+                request.isUnique(), request.isApproximate());
+        if (!query.isNone() && query.getUriIds() != null && query.getUriIds().size() > stagingThreshold) {
+            statsQueryUriRepository.stage(new LinkedHashSet<>(query.getUriIds()));
+            query = query.withUriIds(null).withUrisStaged(true);
+        }
+        return find(query);
+    }
+
+    private List<ViewStats> find(StatsQuery query) {
+        if (query.isNone())
+            return List.of();
+        BooleanBuilder findCriteria = recordCriteria(query);
+        if (query.isUnique() && query.isApproximate())
+            return toViewStats(findUniqueFromSketches(query, findCriteria));
+        // Точное число уникальных IP по агрегатам не сложить, считаем по сырым хитам.
+        if (query.isUnique()) {
+            findCriteria.and(QStatsRecord.statsRecord.timestamp.between(query.getStart(), query.getEnd()));
+            return toViewStats(statsRepository.findHits(findCriteria, QStatsRecord.statsRecord.ip.countDistinct()
+                    .as("hits")));
+        }
+        return toViewStats(findFromRollups(query, findCriteria));
+    }
+
+    /**
+     * Разбор и проверка параметров запроса статистики, замена app и uris ключами словарей.
+     * Для потоковой выдачи выполняется до начала ответа, чтобы ошибка вернулась статусом 400.
+     */
+    public StatsQuery parseQuery(String start, String end, String app, List<String> uris, Boolean unique,
+                                 Boolean approximate) {
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern(DATE_PATTERN);
         LocalDateTime startRange;
         LocalDateTime endRange;
@@ -42,16 +181,499 @@ public class StatsService {
         } catch (IllegalArgumentException e) {
             throw new ValidationDataException(String.format("Invalid data end=%s", end));
         }
+        // Сервиса или URI нет в словаре - хитов по ним не было.
+        Integer appId = null;
+        boolean none = false;
+        if (app != null) {
+            appId = statsDictionary.findAppId(app);
+            none = appId == null;
+        }
+        List<Long> uriIds = null;
+        if (!none && uris != null && uris.size() > 0) {
+            uriIds = statsDictionary.findUriIds(uris);
+            none = uriIds.isEmpty();
+        }
+        return new StatsQuery(startRange, endRange, appId, uriIds, false, null, unique, approximate, none);
+    }
+
+    /**
+     * Статистика с потоковой выдачей: группы читаются курсорами БД, отсортированными по (app_id, uri_id),
+     * части ответа из агрегатов и сырых хитов сливаются по мере чтения. В памяти остаются только
+     * текущая группа и порция из STREAM_CHUNK групп для расшифровки словарями, сколько бы групп ни было.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(StatsQuery query, Consumer<ViewStats> consumer) {
+        if (query.isNone())
+            return;
+        List<StatsGroup> chunk = new ArrayList<>(STREAM_CHUNK);
+        Consumer<StatsGroup> sink = group -> {
+            chunk.add(group);
+            if (chunk.size() == STREAM_CHUNK) {
+                toStreamedViewStats(chunk).forEach(consumer);
+                chunk.clear();
+            }
+        };
+        BooleanBuilder findCriteria = recordCriteria(query);
+        if (query.isUnique() && query.isApproximate()) {
+            streamUniqueFromSketches(query, findCriteria, sink);
+        } else if (query.isUnique()) {
+            findCriteria.and(QStatsRecord.statsRecord.timestamp.between(query.getStart(), query.getEnd()));
+            try (Stream<StatsGroup> groups = statsRepository.streamHits(findCriteria,
+                    QStatsRecord.statsRecord.ip.countDistinct().as("hits"))) {
+                groups.forEach(sink);
+            }
+        } else {
+            streamFromRollups(query, findCriteria, sink);
+        }
+        toStreamedViewStats(chunk).forEach(consumer);
+    }
+
+    /**
+     * Временной ряд: количество хитов по каждому URI в каждой корзине interval за диапазон [start, end],
+     * один запрос с группировкой по корзинам вместо запроса на каждую корзину.
+     * Без unique полные часы берутся из агрегатов statistics_rollup, а для ряда по суткам и целые сутки,
+     * по сырым хитам считаются только неполные часы на краях. Ряд по минутам и ряд уникальных IP
+     * считаются по сырым хитам. Корзины без хитов в ответ не попадают.
+     */
+    public List<TimeSeriesPoint> findTimeSeries(String start, String end, String interval, String app,
+                                                List<String> uris, Boolean unique) {
+        StatsInterval statsInterval = StatsInterval.convert(interval);
+        if (statsInterval == null)
+            throw new ValidationDataException(String.format("Unknown interval=%s", interval));
+        StatsQuery query = parseQuery(start, end, app, uris, unique, false);
+        if (query.getStart().isAfter(query.getEnd()))
+            throw new ValidationDataException(String.format("Start=%s is after end=%s", start, end));
+        long buckets = statsInterval.buckets(query.getStart(), query.getEnd());
+        if (buckets > maxTimeSeriesBuckets)
+            throw new ValidationDataException(String.format("Interval %s gives %s buckets, the limit is %s",
+                    statsInterval, buckets, maxTimeSeriesBuckets));
+        if (query.isNone())
+            return List.of();
         QStatsRecord qStats = QStatsRecord.statsRecord;
-        BooleanBuilder findCriteria = new BooleanBuilder();
-        findCriteria.and(qStats.timestamp.between(startRange, endRange));
-        if (app != null)
-            findCriteria.and(qStats.app.eq(app));
-        if (uris != null && uris.size() > 0)
-            findCriteria.and(qStats.uri.in(uris));
-        NumberExpression<Long> hits = unique ?
-                qStats.ip.countDistinct().as("hits") :
-                qStats.ip.count().as("hits");
-        return statsRepository.findHits(findCriteria, hits);
+        BooleanBuilder rawCriteria = recordCriteria(query);
+        List<StatsBucketGroup> groups;
+        if (query.isUnique()) {
+            rawCriteria.and(qStats.timestamp.between(query.getStart(), query.getEnd()));
+            groups = statsRepository.findHitsByBucket(rawCriteria, statsInterval.truncate(qStats.timestamp),
+                    qStats.ip.countDistinct().as("hits"));
+        } else {
+            groups = findTimeSeriesFromRollups(query, statsInterval, rawCriteria);
+        }
+        groups.sort(Comparator.comparing(StatsBucketGroup::getAppId)
+                .thenComparing(StatsBucketGroup::getUriId)
+                .thenComparing(StatsBucketGroup::getBucket));
+        return toTimeSeries(groups);
+    }
+
+    /**
+     * limit самых посещаемых URI за диапазон [start, end], по убыванию числа хитов.
+     * Количество хитов: агрегаты за полные часы читаются курсором в порядке убывания суммы, к ним добавляются
+     * хиты неполных часов на краях. Чтение прекращается, когда даже с наибольшей добавкой с краёв группа
+     * не попадёт в топ. В памяти - куча из limit групп и группы краевых часов.
+     * Уникальные IP: точно - сортировкой и LIMIT в БД по сырым хитам, приближённо (approximate=true) -
+     * по скетчам HyperLogLog с отбором в ту же кучу, что дешевле на длинных диапазонах.
+     */
+    @Transactional(readOnly = true)
+    public List<ViewStats> findTop(String start, String end, String app, String uriPrefix, int limit,
+                                   Boolean unique, Boolean approximate) {
+        if (limit < 1 || limit > maxTopLimit)
+            throw new ValidationDataException(String.format("Limit=%s is out of range [1, %s]", limit, maxTopLimit));
+        StatsQuery query = parseQuery(start, end, app, null, unique, approximate)
+                .withUriPrefix(uriPrefix == null || uriPrefix.isEmpty() ? null : uriPrefix);
+        if (query.getStart().isAfter(query.getEnd()))
+            throw new ValidationDataException(String.format("Start=%s is after end=%s", start, end));
+        if (query.isNone())
+            return List.of();
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        BooleanBuilder rawCriteria = recordCriteria(query);
+        PriorityQueue<StatsGroup> top = new PriorityQueue<>(limit + 1, TOP_ORDER);
+        if (query.isUnique() && query.isApproximate()) {
+            streamUniqueFromSketches(query, rawCriteria, group -> offer(top, group, limit));
+        } else if (query.isUnique()) {
+            rawCriteria.and(qStats.timestamp.between(query.getStart(), query.getEnd()));
+            return toViewStats(statsRepository.findTopHits(rawCriteria, qStats.ip.countDistinct(), limit));
+        } else {
+            LocalDateTime hourStart = RollupGranularity.HOUR.ceil(query.getStart());
+            LocalDateTime hourEnd = RollupGranularity.HOUR.floor(query.getEnd());
+            if (!hourStart.isBefore(hourEnd)) {
+                rawCriteria.and(qStats.timestamp.between(query.getStart(), query.getEnd()));
+                return toViewStats(statsRepository.findTopHits(rawCriteria, qStats.ip.count(), limit));
+            }
+            findTopFromRollups(query, hourStart, hourEnd, rawCriteria, top, limit);
+        }
+        List<StatsGroup> result = new ArrayList<>(top);
+        result.sort(TOP_ORDER.reversed());
+        return toViewStats(result);
+    }
+
+    /**
+     * Количество хитов за диапазон [start, end].
+     * Целые сутки и целые часы внутри диапазона берутся из агрегатов statistics_rollup,
+     * по сырым хитам считаются только неполные часы на краях.
+     */
+    private List<StatsGroup> findFromRollups(StatsQuery query, BooleanBuilder rawCriteria) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        LocalDateTime start = query.getStart();
+        LocalDateTime end = query.getEnd();
+        NumberExpression<Long> hits = qStats.ip.count().as("hits");
+        LocalDateTime hourStart = RollupGranularity.HOUR.ceil(start);
+        LocalDateTime hourEnd = RollupGranularity.HOUR.floor(end);
+        if (!hourStart.isBefore(hourEnd)) {
+            rawCriteria.and(qStats.timestamp.between(start, end));
+            return statsRepository.findHits(rawCriteria, hits);
+        }
+
+        BooleanBuilder rollupCriteria = rollupCriteria(query, hourStart, hourEnd);
+        Map<String, StatsGroup> result = new LinkedHashMap<>();
+        statsRepository.findRollupHits(rollupCriteria).forEach(g -> merge(result, g));
+        rawCriteria.and(edgeCriteria(query, hourStart, hourEnd));
+        statsRepository.findHits(rawCriteria, hits).forEach(g -> merge(result, g));
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Оценка числа уникальных IP за диапазон [start, end].
+     * Полные сутки берутся из суточных скетчей HyperLogLog, IP с неполных суток на краях добавляются в скетчи.
+     */
+    private List<StatsGroup> findUniqueFromSketches(StatsQuery query, BooleanBuilder rawCriteria) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        QStatsSketch qSketch = QStatsSketch.statsSketch;
+        LocalDateTime start = query.getStart();
+        LocalDateTime end = query.getEnd();
+        LocalDateTime dayStart = RollupGranularity.DAY.ceil(start);
+        LocalDateTime dayEnd = RollupGranularity.DAY.floor(end);
+        Map<String, StatsGroup> keys = new LinkedHashMap<>();
+        Map<String, HyperLogLog> sketches = new HashMap<>();
+        if (dayStart.isBefore(dayEnd)) {
+            BooleanBuilder sketchCriteria = new BooleanBuilder();
+            if (query.getAppId() != null)
+                sketchCriteria.and(qSketch.appId.eq(query.getAppId()));
+            sketchCriteria.and(uriCriteria(qSketch.uriId, query));
+            sketchCriteria.and(qSketch.bucket.goe(dayStart)).and(qSketch.bucket.lt(dayEnd));
+            for (StatsSketch s : statsRepository.findSketches(sketchCriteria)) {
+                String key = key(s.getAppId(), s.getUriId());
+                keys.putIfAbsent(key, new StatsGroup(s.getAppId(), s.getUriId(), 0L));
+                sketches.merge(key, HyperLogLog.fromBytes(s.getSketch()), HyperLogLog::merge);
+            }
+            rawCriteria.and(edgeCriteria(query, dayStart, dayEnd));
+        } else {
+            rawCriteria.and(qStats.timestamp.between(start, end));
+        }
+        for (StatsRecord r : statsRepository.findDistinctIps(rawCriteria)) {
+            String key = key(r.getAppId(), r.getUriId());
+            keys.putIfAbsent(key, new StatsGroup(r.getAppId(), r.getUriId(), 0L));
+            sketches.computeIfAbsent(key, k -> new HyperLogLog(hllPrecision)).add(r.getIp());
+        }
+        keys.forEach((key, g) -> g.setHits(sketches.get(key).estimate()));
+        return new ArrayList<>(keys.values());
+    }
+
+    /**
+     * Временной ряд количества хитов: агрегаты за полные часы и сырые хиты на краях, сгруппированные
+     * по корзинам interval. Корзина первых и последних суток собирается из обеих частей.
+     */
+    private List<StatsBucketGroup> findTimeSeriesFromRollups(StatsQuery query, StatsInterval interval,
+                                                             BooleanBuilder rawCriteria) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        QStatsRollup qRollup = QStatsRollup.statsRollup;
+        NumberExpression<Long> hits = qStats.ip.count().as("hits");
+        LocalDateTime hourStart = RollupGranularity.HOUR.ceil(query.getStart());
+        LocalDateTime hourEnd = RollupGranularity.HOUR.floor(query.getEnd());
+        // Минутных агрегатов нет.
+        if (interval == StatsInterval.MINUTE || !hourStart.isBefore(hourEnd)) {
+            rawCriteria.and(qStats.timestamp.between(query.getStart(), query.getEnd()));
+            return statsRepository.findHitsByBucket(rawCriteria, interval.truncate(qStats.timestamp), hits);
+        }
+        // Суточные агрегаты на часы не делятся, ряд по часам строится только по часовым.
+        BooleanBuilder rollupCriteria = interval == StatsInterval.DAY
+                ? rollupCriteria(query, hourStart, hourEnd)
+                : rollupKeyCriteria(query)
+                .and(bucketRange(RollupGranularity.HOUR, hourStart, hourEnd));
+        Map<String, StatsBucketGroup> result = new HashMap<>();
+        statsRepository.findRollupHitsByBucket(rollupCriteria, interval.truncate(qRollup.bucket))
+                .forEach(g -> mergeBucket(result, g));
+        rawCriteria.and(edgeCriteria(query, hourStart, hourEnd));
+        statsRepository.findHitsByBucket(rawCriteria, interval.truncate(qStats.timestamp), hits)
+                .forEach(g -> mergeBucket(result, g));
+        return new ArrayList<>(result.values());
+    }
+
+    private void findTopFromRollups(StatsQuery query, LocalDateTime hourStart, LocalDateTime hourEnd,
+                                    BooleanBuilder rawCriteria, PriorityQueue<StatsGroup> top, int limit) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        QStatsRollup qRollup = QStatsRollup.statsRollup;
+        rawCriteria.and(edgeCriteria(query, hourStart, hourEnd));
+        Map<String, StatsGroup> edges = new HashMap<>();
+        statsRepository.findHits(rawCriteria, qStats.ip.count().as("hits"))
+                .forEach(g -> edges.put(key(g.getAppId(), g.getUriId()), g));
+        long maxEdge = edges.values().stream().mapToLong(StatsGroup::getHits).max().orElse(0);
+
+        BooleanBuilder rollupCriteria = rollupCriteria(query, hourStart, hourEnd);
+        try (Stream<StatsGroup> rollups = statsRepository.streamRollupHitsByHits(rollupCriteria)) {
+            Iterator<StatsGroup> groups = rollups.iterator();
+            while (groups.hasNext()) {
+                StatsGroup group = groups.next();
+                // Суммы агрегатов дальше не больше текущей, краевые добавки - не больше maxEdge.
+                if (top.size() == limit && group.getHits() + maxEdge < top.peek().getHits())
+                    break;
+                StatsGroup edge = edges.remove(key(group.getAppId(), group.getUriId()));
+                if (edge != null)
+                    group.setHits(group.getHits() + edge.getHits());
+                offer(top, group, limit);
+            }
+        }
+        // Группы только с краевыми хитами. Если у группы есть непрочитанные агрегаты,
+        // она и с ними не прошла бы в топ, а без них тем более.
+        edges.values().forEach(g -> offer(top, g, limit));
+    }
+
+    /**
+     * Добавление группы в кучу топа с вытеснением наименьшей, если в куче больше limit групп.
+     */
+    private void offer(PriorityQueue<StatsGroup> top, StatsGroup group, int limit) {
+        top.offer(group);
+        if (top.size() > limit)
+            top.poll();
+    }
+
+    /**
+     * Потоковый вариант findFromRollups: группы агрегатов и сырых хитов на краях диапазона
+     * приходят отсортированными и суммируются слиянием.
+     */
+    private void streamFromRollups(StatsQuery query, BooleanBuilder rawCriteria, Consumer<StatsGroup> sink) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        NumberExpression<Long> hits = qStats.ip.count().as("hits");
+        LocalDateTime hourStart = RollupGranularity.HOUR.ceil(query.getStart());
+        LocalDateTime hourEnd = RollupGranularity.HOUR.floor(query.getEnd());
+        if (!hourStart.isBefore(hourEnd)) {
+            rawCriteria.and(qStats.timestamp.between(query.getStart(), query.getEnd()));
+            try (Stream<StatsGroup> groups = statsRepository.streamHits(rawCriteria, hits)) {
+                groups.forEach(sink);
+            }
+            return;
+        }
+        BooleanBuilder rollupCriteria = rollupCriteria(query, hourStart, hourEnd);
+        rawCriteria.and(edgeCriteria(query, hourStart, hourEnd));
+        try (Stream<StatsGroup> rollups = statsRepository.streamRollupHits(rollupCriteria);
+             Stream<StatsGroup> raw = statsRepository.streamHits(rawCriteria, hits)) {
+            Iterator<StatsGroup> a = rollups.iterator();
+            Iterator<StatsGroup> b = raw.iterator();
+            StatsGroup nextA = a.hasNext() ? a.next() : null;
+            StatsGroup nextB = b.hasNext() ? b.next() : null;
+            while (nextA != null || nextB != null) {
+                int cmp = nextA == null ? 1 : nextB == null ? -1
+                        : compare(nextA.getAppId(), nextA.getUriId(), nextB.getAppId(), nextB.getUriId());
+                if (cmp == 0)
+                    nextA.setHits(nextA.getHits() + nextB.getHits());
+                if (cmp <= 0) {
+                    sink.accept(nextA);
+                    nextA = a.hasNext() ? a.next() : null;
+                } else {
+                    sink.accept(nextB);
+                }
+                if (cmp >= 0)
+                    nextB = b.hasNext() ? b.next() : null;
+            }
+        }
+    }
+
+    /**
+     * Потоковый вариант findUniqueFromSketches: суточные скетчи и IP с краёв диапазона приходят
+     * отсортированными по группам, в памяти - скетч только текущей группы.
+     */
+    private void streamUniqueFromSketches(StatsQuery query, BooleanBuilder rawCriteria, Consumer<StatsGroup> sink) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        QStatsSketch qSketch = QStatsSketch.statsSketch;
+        LocalDateTime dayStart = RollupGranularity.DAY.ceil(query.getStart());
+        LocalDateTime dayEnd = RollupGranularity.DAY.floor(query.getEnd());
+        BooleanBuilder sketchCriteria = new BooleanBuilder();
+        if (dayStart.isBefore(dayEnd)) {
+            if (query.getAppId() != null)
+                sketchCriteria.and(qSketch.appId.eq(query.getAppId()));
+            sketchCriteria.and(uriCriteria(qSketch.uriId, query));
+            sketchCriteria.and(qSketch.bucket.goe(dayStart)).and(qSketch.bucket.lt(dayEnd));
+            rawCriteria.and(edgeCriteria(query, dayStart, dayEnd));
+        } else {
+            rawCriteria.and(qStats.timestamp.between(query.getStart(), query.getEnd()));
+        }
+        // Без полных суток скетчи не читаются.
+        try (Stream<StatsSketch> sketchStream = dayStart.isBefore(dayEnd)
+                ? statsRepository.streamSketches(sketchCriteria) : Stream.empty();
+             Stream<StatsRecord> ipStream = statsRepository.streamDistinctIps(rawCriteria)) {
+            Iterator<StatsSketch> sketches = sketchStream.iterator();
+            Iterator<StatsRecord> ips = ipStream.iterator();
+            StatsSketch sketch = sketches.hasNext() ? sketches.next() : null;
+            StatsRecord ip = ips.hasNext() ? ips.next() : null;
+            while (sketch != null || ip != null) {
+                boolean sketchFirst = ip == null || (sketch != null
+                        && compare(sketch.getAppId(), sketch.getUriId(), ip.getAppId(), ip.getUriId()) <= 0);
+                StatsGroup group = sketchFirst ? new StatsGroup(sketch.getAppId(), sketch.getUriId(), 0L)
+                        : new StatsGroup(ip.getAppId(), ip.getUriId(), 0L);
+                HyperLogLog hll = null;
+                while (sketch != null && sameGroup(group, sketch.getAppId(), sketch.getUriId())) {
+                    HyperLogLog next = HyperLogLog.fromBytes(sketch.getSketch());
+                    hll = hll == null ? next : hll.merge(next);
+                    sketch = sketches.hasNext() ? sketches.next() : null;
+                }
+                if (hll == null)
+                    hll = new HyperLogLog(hllPrecision);
+                while (ip != null && sameGroup(group, ip.getAppId(), ip.getUriId())) {
+                    hll.add(ip.getIp());
+                    ip = ips.hasNext() ? ips.next() : null;
+                }
+                group.setHits(hll.estimate());
+                sink.accept(group);
+            }
+        }
+    }
+
+    /**
+     * Порядок групп в потоковых запросах: по app_id, затем по uri_id.
+     */
+    private static int compare(Integer appIdA, Long uriIdA, Integer appIdB, Long uriIdB) {
+        int cmp = appIdA.compareTo(appIdB);
+        return cmp != 0 ? cmp : uriIdA.compareTo(uriIdB);
+    }
+
+    private boolean sameGroup(StatsGroup group, Integer appId, Long uriId) {
+        return group.getAppId().equals(appId) && group.getUriId().equals(uriId);
+    }
+
+    /**
+     * Сырые хиты на краях диапазона запроса: [start, innerStart) и [innerEnd, end].
+     * Охватывающее условие на весь диапазон лишнее по смыслу, но по нему индекс по времени применим
+     * и там, где СУБД не объединяет индексные просмотры по OR (H2). PostgreSQL выбирает более узкие края.
+     */
+    private BooleanExpression edgeCriteria(StatsQuery query, LocalDateTime innerStart, LocalDateTime innerEnd) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        return qStats.timestamp.between(query.getStart(), query.getEnd())
+                .and(qStats.timestamp.goe(query.getStart()).and(qStats.timestamp.lt(innerStart))
+                        .or(qStats.timestamp.goe(innerEnd).and(qStats.timestamp.loe(query.getEnd()))));
+    }
+
+    private BooleanBuilder recordCriteria(StatsQuery query) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        BooleanBuilder criteria = new BooleanBuilder();
+        if (query.getAppId() != null)
+            criteria.and(qStats.appId.eq(query.getAppId()));
+        criteria.and(uriCriteria(qStats.uriId, query));
+        return criteria;
+    }
+
+    /**
+     * Условие на URI запроса: список ключей, ключи во временной таблице или начало URI.
+     */
+    private BooleanBuilder uriCriteria(NumberPath<Long> uriId, StatsQuery query) {
+        BooleanBuilder criteria = new BooleanBuilder();
+        if (query.getUriIds() != null)
+            criteria.and(uriId.in(query.getUriIds()));
+        if (query.isUrisStaged())
+            criteria.and(uriId.in(JPAExpressions.select(QStatsQueryUri.statsQueryUri.uriId)
+                    .from(QStatsQueryUri.statsQueryUri)));
+        if (query.getUriPrefix() != null)
+            criteria.and(uriPrefix(uriId, query.getUriPrefix()));
+        return criteria;
+    }
+
+    /**
+     * URI начинается с prefix. Ключи выбираются подзапросом к словарю, а не списком параметров:
+     * под префикс может попасть больше URI, чем параметров допускает запрос.
+     */
+    private BooleanExpression uriPrefix(NumberPath<Long> uriId, String prefix) {
+        QStatsUri qUri = QStatsUri.statsUri;
+        return uriId.in(JPAExpressions.select(qUri.id).from(qUri).where(qUri.uri.startsWith(prefix)));
+    }
+
+    /**
+     * Условие на агрегаты за полные часы [hourStart, hourEnd): целые сутки - суточными корзинами,
+     * остальное - часовыми.
+     */
+    private BooleanBuilder rollupCriteria(StatsQuery query, LocalDateTime hourStart, LocalDateTime hourEnd) {
+        BooleanBuilder rollupCriteria = rollupKeyCriteria(query);
+        LocalDateTime dayStart = RollupGranularity.DAY.ceil(hourStart);
+        LocalDateTime dayEnd = RollupGranularity.DAY.floor(hourEnd);
+        BooleanBuilder buckets = new BooleanBuilder();
+        if (dayStart.isBefore(dayEnd)) {
+            buckets.or(bucketRange(RollupGranularity.DAY, dayStart, dayEnd));
+            buckets.or(bucketRange(RollupGranularity.HOUR, hourStart, dayStart));
+            buckets.or(bucketRange(RollupGranularity.HOUR, dayEnd, hourEnd));
+        } else {
+            buckets.or(bucketRange(RollupGranularity.HOUR, hourStart, hourEnd));
+        }
+        rollupCriteria.and(buckets);
+        return rollupCriteria;
+    }
+
+    private BooleanBuilder rollupKeyCriteria(StatsQuery query) {
+        QStatsRollup qRollup = QStatsRollup.statsRollup;
+        BooleanBuilder criteria = new BooleanBuilder();
+        if (query.getAppId() != null)
+            criteria.and(qRollup.appId.eq(query.getAppId()));
+        criteria.and(uriCriteria(qRollup.uriId, query));
+        return criteria;
+    }
+
+    private BooleanBuilder bucketRange(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        QStatsRollup qRollup = QStatsRollup.statsRollup;
+        return new BooleanBuilder(qRollup.granularity.eq(granularity)
+                .and(qRollup.bucket.goe(from))
+                .and(qRollup.bucket.lt(to)));
+    }
+
+    private void merge(Map<String, StatsGroup> result, StatsGroup group) {
+        result.merge(key(group.getAppId(), group.getUriId()), group, (a, b) -> {
+            a.setHits(a.getHits() + b.getHits());
+            return a;
+        });
+    }
+
+    private void mergeBucket(Map<String, StatsBucketGroup> result, StatsBucketGroup group) {
+        result.merge(key(group.getAppId(), group.getUriId()) + ":" + group.getBucket(), group, (a, b) -> {
+            a.setHits(a.getHits() + b.getHits());
+            return a;
+        });
+    }
+
+    private String key(Integer appId, Long uriId) {
+        return appId + ":" + uriId;
+    }
+
+    private StatsRecord toStatRecord(EndpointHit hit, byte[] ip) {
+        return StatsMapper.toStatRecord(hit, statsDictionary.appId(hit.getApp()), statsDictionary.uriId(hit.getUri()),
+                ip);
+    }
+
+    /**
+     * Расшифровка ключей групп словарями. Публичный формат ViewStats не меняется.
+     */
+    private List<ViewStats> toViewStats(List<StatsGroup> groups) {
+        Map<Long, String> uris = statsDictionary.uris(groups.stream()
+                .map(StatsGroup::getUriId)
+                .collect(Collectors.toList()));
+        return groups.stream()
+                .map(g -> new ViewStats(statsDictionary.appName(g.getAppId()), uris.get(g.getUriId()), g.getHits()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Расшифровка порции потоковой выдачи: URI не оседают в кэше словаря.
+     */
+    private List<ViewStats> toStreamedViewStats(List<StatsGroup> groups) {
+        Map<Long, String> uris = statsDictionary.findUris(groups.stream()
+                .map(StatsGroup::getUriId)
+                .collect(Collectors.toList()));
+        return groups.stream()
+                .map(g -> new ViewStats(statsDictionary.appName(g.getAppId()), uris.get(g.getUriId()), g.getHits()))
+                .collect(Collectors.toList());
+    }
+
+    private List<TimeSeriesPoint> toTimeSeries(List<StatsBucketGroup> groups) {
+        Map<Long, String> uris = statsDictionary.uris(groups.stream()
+                .map(StatsBucketGroup::getUriId)
+                .collect(Collectors.toList()));
+        return groups.stream()
+                .map(g -> new TimeSeriesPoint(statsDictionary.appName(g.getAppId()), uris.get(g.getUriId()),
+                        g.getBucket(), g.getHits()))
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,265 @@
+package ru.practicum.statsserver.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.statsserver.model.RollupGranularity;
+import ru.practicum.statsserver.model.StatsRecord;
+import ru.practicum.statsserver.model.StatsRollup;
+import ru.practicum.statsserver.model.StatsSketch;
+import ru.practicum.statsserver.util.HyperLogLog;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная запись хитов в обход JPA: один JDBC batch на всю пачку вместо save() на каждую запись.
+ * В той же транзакции обновляются агрегаты statistics_rollup и скетчи уникальных IP statistics_hll.
+ * Агрегаты и скетчи обновляются так, что писать могут несколько потоков и экземпляров сервера:
+ * агрегаты - одним upsert на ключ (INSERT ... ON CONFLICT DO UPDATE на PostgreSQL),
+ * скетчи - слиянием под блокировкой строк. Ключи пачки обрабатываются в одном порядке, чтобы одновременные
+ * пачки не взаимоблокировались.
+ */
+@Repository
+@Slf4j
+@RequiredArgsConstructor
+public class HitBatchRepository {
+    private static final String INSERT_HIT = "INSERT INTO statistics (app_id, uri_id, ip, timestamp) " +
+            "VALUES (?, ?, ?, ?)";
+    private static final String UPSERT_ROLLUP_POSTGRESQL = "INSERT INTO statistics_rollup " +
+            "(hits, granularity, bucket, app_id, uri_id) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (granularity, bucket, app_id, uri_id) " +
+            "DO UPDATE SET hits = statistics_rollup.hits + EXCLUDED.hits";
+    // H2 не поддерживает ON CONFLICT DO UPDATE, а его MERGE не атомарен при одновременной вставке ключа:
+    // недостающие строки вставляются с нулём и затем увеличиваются под блокировкой строк.
+    private static final String INSERT_ROLLUP_H2 = "INSERT INTO statistics_rollup " +
+            "(hits, granularity, bucket, app_id, uri_id) VALUES (0, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String UPDATE_ROLLUP_H2 = "UPDATE statistics_rollup SET hits = hits + ? " +
+            "WHERE granularity = ? AND bucket = ? AND app_id = ? AND uri_id = ?";
+    private static final String INSERT_SKETCH = "INSERT INTO statistics_hll " +
+            "(sketch, bucket, app_id, uri_id) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String LOCK_SKETCHES = "SELECT bucket, app_id, uri_id, sketch FROM statistics_hll " +
+            "WHERE (bucket, app_id, uri_id) IN (%s) ORDER BY bucket, app_id, uri_id FOR UPDATE";
+    private static final String UPDATE_SKETCH = "UPDATE statistics_hll SET sketch = ? " +
+            "WHERE bucket = ? AND app_id = ? AND uri_id = ?";
+    private static final String SELECT_DAY_HITS = "SELECT app_id, uri_id, ip FROM statistics " +
+            "WHERE timestamp >= ? AND timestamp < ?";
+
+    private static final Comparator<StatsRollup.Key> ROLLUP_ORDER = Comparator
+            .comparing(StatsRollup.Key::getGranularity)
+            .thenComparing(StatsRollup.Key::getBucket)
+            .thenComparing(StatsRollup.Key::getAppId)
+            .thenComparing(StatsRollup.Key::getUriId);
+    private static final Comparator<StatsSketch.Key> SKETCH_ORDER = Comparator
+            .comparing(StatsSketch.Key::getBucket)
+            .thenComparing(StatsSketch.Key::getAppId)
+            .thenComparing(StatsSketch.Key::getUriId);
+
+    // Отметка о построении скетчей по накопленным хитам в stats_backfill.
+    private static final String SKETCH_BACKFILL = "statistics_hll";
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${stats.hll.precision}")
+    int hllPrecision;
+    @Value("${stats.stream.fetch-size}")
+    int fetchSize;
+    private boolean postgres;
+
+    @PostConstruct
+    void init() {
+        postgres = "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) c ->
+                c.getMetaData().getDatabaseProductName()));
+    }
+
+    /**
+     * Запись пачки хитов.
+     */
+    @Transactional
+    public void saveAll(List<StatsRecord> records) {
+        jdbcTemplate.batchUpdate(INSERT_HIT, records, records.size(), (ps, r) -> {
+            ps.setInt(1, r.getAppId());
+            ps.setLong(2, r.getUriId());
+            ps.setBytes(3, r.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(r.getTimestamp()));
+        });
+        saveRollups(records);
+        saveSketches(records);
+    }
+
+    private void saveRollups(List<StatsRecord> records) {
+        Map<StatsRollup.Key, Long> increments = new HashMap<>();
+        for (StatsRecord r : records) {
+            for (RollupGranularity g : RollupGranularity.values()) {
+                StatsRollup.Key key = new StatsRollup.Key(g, g.floor(r.getTimestamp()), r.getAppId(),
+                        r.getUriId());
+                increments.merge(key, 1L, Long::sum);
+            }
+        }
+        List<Map.Entry<StatsRollup.Key, Long>> entries = new ArrayList<>(increments.entrySet());
+        entries.sort(Map.Entry.comparingByKey(ROLLUP_ORDER));
+        if (postgres) {
+            jdbcTemplate.batchUpdate(UPSERT_ROLLUP_POSTGRESQL, new RollupSetter(entries));
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ROLLUP_H2, entries, entries.size(), (ps, e) -> {
+            ps.setString(1, e.getKey().getGranularity().name());
+            ps.setTimestamp(2, Timestamp.valueOf(e.getKey().getBucket()));
+            ps.setInt(3, e.getKey().getAppId());
+            ps.setLong(4, e.getKey().getUriId());
+        });
+        jdbcTemplate.batchUpdate(UPDATE_ROLLUP_H2, new RollupSetter(entries));
+    }
+
+    private void saveSketches(List<StatsRecord> records) {
+        Map<StatsSketch.Key, HyperLogLog> increments = new HashMap<>();
+        for (StatsRecord r : records) {
+            StatsSketch.Key key = new StatsSketch.Key(RollupGranularity.DAY.floor(r.getTimestamp()),
+                    r.getAppId(), r.getUriId());
+            increments.computeIfAbsent(key, k -> new HyperLogLog(hllPrecision)).add(r.getIp());
+        }
+        mergeSketches(increments);
+    }
+
+    /**
+     * Слияние приращений со скетчами в БД. Недостающие строки вставляются сразу с приращением,
+     * затем все строки пачки блокируются (SELECT ... FOR UPDATE), объединяются с приращением и записываются:
+     * объединение скетча с самим собой его не меняет, а блокировка не даёт потерять приращение другой пачки.
+     */
+    private void mergeSketches(Map<StatsSketch.Key, HyperLogLog> increments) {
+        if (increments.isEmpty())
+            return;
+        List<StatsSketch.Key> keys = new ArrayList<>(increments.keySet());
+        keys.sort(SKETCH_ORDER);
+        jdbcTemplate.batchUpdate(INSERT_SKETCH, keys, BATCH_SIZE,
+                (ps, key) -> setSketch(ps, increments.get(key).toBytes(), key));
+        List<Object[]> updates = new ArrayList<>(keys.size());
+        for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+            List<StatsSketch.Key> chunk = keys.subList(from, Math.min(from + BATCH_SIZE, keys.size()));
+            List<Object> params = new ArrayList<>(chunk.size() * 3);
+            for (StatsSketch.Key key : chunk) {
+                params.add(Timestamp.valueOf(key.getBucket()));
+                params.add(key.getAppId());
+                params.add(key.getUriId());
+            }
+            String sql = String.format(LOCK_SKETCHES,
+                    String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?)")));
+            jdbcTemplate.query(sql, rs -> {
+                StatsSketch.Key key = new StatsSketch.Key(rs.getTimestamp(1).toLocalDateTime(), rs.getInt(2),
+                        rs.getLong(3));
+                HyperLogLog merged = HyperLogLog.fromBytes(rs.getBytes(4)).merge(increments.get(key));
+                updates.add(new Object[]{merged.toBytes(), rs.getTimestamp(1), key.getAppId(), key.getUriId()});
+            }, params.toArray());
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SKETCH, updates);
+    }
+
+    /**
+     * Построение скетчей по уже накопленным хитам - разовая миграция с отметкой в stats_backfill.
+     * Хиты читаются курсором порциями stats.stream.fetch-size, каждые сутки записываются своей транзакцией
+     * вместе с отметкой о следующих сутках: прерванное построение продолжается с них.
+     * Вызывать до начала записи хитов.
+     */
+    public void backfillSketches() {
+        List<Timestamp> marks = jdbcTemplate.queryForList("SELECT next_bucket FROM stats_backfill WHERE name = ?",
+                Timestamp.class, SKETCH_BACKFILL);
+        Timestamp next;
+        if (!marks.isEmpty()) {
+            next = marks.get(0);
+        } else {
+            // Первый запуск: если скетчи уже есть, строить нечего.
+            Boolean built = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM statistics_hll)",
+                    Boolean.class);
+            next = Boolean.TRUE.equals(built) ? null
+                    : jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM statistics", Timestamp.class);
+            try {
+                jdbcTemplate.update("INSERT INTO stats_backfill (name, next_bucket) VALUES (?, ?)",
+                        SKETCH_BACKFILL, next);
+            } catch (DuplicateKeyException e) {
+                // Построение начал другой экземпляр сервера.
+                return;
+            }
+        }
+        int days = 0;
+        while (next != null) {
+            LocalDateTime day = RollupGranularity.DAY.floor(next.toLocalDateTime());
+            next = transactionTemplate.execute(status -> backfillDay(day));
+            days++;
+        }
+        if (days > 0)
+            log.info("Built unique IP sketches for {} day(s) of existing hits.", days);
+    }
+
+    /**
+     * Скетчи одних суток. Приращения сливаются с БД порциями по BATCH_SIZE ключей, чтобы не держать
+     * в памяти скетчи всех URI суток.
+     *
+     * @return Начало следующих суток с хитами или null, если хитов дальше нет.
+     */
+    private Timestamp backfillDay(LocalDateTime day) {
+        Map<StatsSketch.Key, HyperLogLog> increments = new HashMap<>();
+        jdbcTemplate.query(c -> {
+            PreparedStatement ps = c.prepareStatement(SELECT_DAY_HITS);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, Timestamp.valueOf(day));
+            ps.setTimestamp(2, Timestamp.valueOf(day.plusDays(1)));
+            return ps;
+        }, rs -> {
+            increments.computeIfAbsent(new StatsSketch.Key(day, rs.getInt(1), rs.getLong(2)),
+                    k -> new HyperLogLog(hllPrecision)).add(rs.getBytes(3));
+            if (increments.size() >= BATCH_SIZE) {
+                mergeSketches(increments);
+                increments.clear();
+            }
+        });
+        mergeSketches(increments);
+        Timestamp next = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM statistics WHERE timestamp >= ?",
+                Timestamp.class, Timestamp.valueOf(day.plusDays(1)));
+        jdbcTemplate.update("UPDATE stats_backfill SET next_bucket = ? WHERE name = ?", next, SKETCH_BACKFILL);
+        return next;
+    }
+
+    private static void setSketch(PreparedStatement ps, byte[] sketch, StatsSketch.Key key) throws SQLException {
+        ps.setBytes(1, sketch);
+        ps.setTimestamp(2, Timestamp.valueOf(key.getBucket()));
+        ps.setInt(3, key.getAppId());
+        ps.setLong(4, key.getUriId());
+    }
+
+    @RequiredArgsConstructor
+    private static class RollupSetter implements BatchPreparedStatementSetter {
+        private final List<Map.Entry<StatsRollup.Key, Long>> entries;
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            Map.Entry<StatsRollup.Key, Long> e = entries.get(i);
+            ps.setLong(1, e.getValue());
+            ps.setString(2, e.getKey().getGranularity().name());
+            ps.setTimestamp(3, Timestamp.valueOf(e.getKey().getBucket()));
+            ps.setInt(4, e.getKey().getAppId());
+            ps.setLong(5, e.getKey().getUriId());
+        }
+
+        @Override
+        public int getBatchSize() {
+            return entries.size();
+        }
+    }
+}
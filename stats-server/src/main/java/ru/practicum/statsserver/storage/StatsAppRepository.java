@@ -0,0 +1,11 @@
+package ru.practicum.statsserver.storage;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.practicum.statsserver.model.StatsApp;
+
+import java.util.Optional;
+
+public interface StatsAppRepository extends JpaRepository<StatsApp, Integer> {
+
+    Optional<StatsApp> findByName(String name);
+}
@@ -0,0 +1,48 @@
+package ru.practicum.statsserver.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+/**
+ * Временная таблица stats_query_uris с ключами URI большого запроса статистики.
+ * Запросы ссылаются на неё подзапросом вместо списка IN из тысяч параметров.
+ * Таблица своя у каждого соединения и очищается при завершении транзакции,
+ * поэтому заполнение и запросы по ней выполняются в одной транзакции.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsQueryUriRepository {
+    private static final String CREATE_POSTGRESQL = "CREATE TEMP TABLE IF NOT EXISTS stats_query_uris " +
+            "(uri_id BIGINT NOT NULL, CONSTRAINT pk_stats_query_uris PRIMARY KEY (uri_id)) ON COMMIT DELETE ROWS";
+    // В H2 без TRANSACTIONAL создание таблицы завершает текущую транзакцию.
+    private static final String CREATE_H2 = "CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS stats_query_uris " +
+            "(uri_id BIGINT NOT NULL, CONSTRAINT pk_stats_query_uris PRIMARY KEY (uri_id)) " +
+            "ON COMMIT DELETE ROWS TRANSACTIONAL";
+    private static final String INSERT_URI = "INSERT INTO stats_query_uris (uri_id) VALUES (?)";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Запись ключей URI во временную таблицу текущей транзакции.
+     *
+     * @param uriIds Ключи без повторов.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void stage(Collection<Long> uriIds) {
+        boolean postgres = "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) c ->
+                c.getMetaData().getDatabaseProductName()));
+        jdbcTemplate.execute(postgres ? CREATE_POSTGRESQL : CREATE_H2);
+        jdbcTemplate.batchUpdate(INSERT_URI, uriIds, BATCH_SIZE, (ps, id) -> ps.setLong(1, id));
+        // У временных таблиц нет статистики автоочистки, без неё планировщик не знает их размер.
+        if (postgres)
+            jdbcTemplate.execute("ANALYZE stats_query_uris");
+    }
+}
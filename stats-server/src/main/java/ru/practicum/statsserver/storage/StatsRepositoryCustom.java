@@ -1,11 +1,46 @@
 package ru.practicum.statsserver.storage;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.dsl.DateTimeExpression;
 import com.querydsl.core.types.dsl.NumberExpression;
-import ru.practicum.statsserver.model.dto.ViewStats;
+import ru.practicum.statsserver.model.StatsBucketGroup;
+import ru.practicum.statsserver.model.StatsGroup;
+import ru.practicum.statsserver.model.StatsRecord;
+import ru.practicum.statsserver.model.StatsSketch;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface StatsRepositoryCustom {
-    List<ViewStats> findHits(BooleanBuilder criteria, NumberExpression<Long> hits);
+    List<StatsGroup> findHits(BooleanBuilder criteria, NumberExpression<Long> hits);
+
+    List<StatsGroup> findRollupHits(BooleanBuilder criteria);
+
+    List<StatsSketch> findSketches(BooleanBuilder criteria);
+
+    List<StatsRecord> findDistinctIps(BooleanBuilder criteria);
+
+    List<StatsBucketGroup> findHitsByBucket(BooleanBuilder criteria, DateTimeExpression<LocalDateTime> bucket,
+                                            NumberExpression<Long> hits);
+
+    List<StatsBucketGroup> findRollupHitsByBucket(BooleanBuilder criteria, DateTimeExpression<LocalDateTime> bucket);
+
+    List<StatsGroup> findTopHits(BooleanBuilder criteria, NumberExpression<Long> hits, int limit);
+
+    // Потоковые варианты: строки читаются курсором БД порциями stats.stream.fetch-size
+    // и отсортированы по (app_id, uri_id). Вызываются внутри транзакции, поток нужно закрыть.
+
+    Stream<StatsGroup> streamHits(BooleanBuilder criteria, NumberExpression<Long> hits);
+
+    Stream<StatsGroup> streamRollupHits(BooleanBuilder criteria);
+
+    /**
+     * Суммы агрегатов по группам в порядке убывания, а не по (app_id, uri_id).
+     */
+    Stream<StatsGroup> streamRollupHitsByHits(BooleanBuilder criteria);
+
+    Stream<StatsSketch> streamSketches(BooleanBuilder criteria);
+
+    Stream<StatsRecord> streamDistinctIps(BooleanBuilder criteria);
 }
@@ -2,33 +2,213 @@ package ru.practicum.statsserver.storage;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.DateTimeExpression;
 import com.querydsl.core.types.dsl.NumberExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAQuery;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.statsserver.model.QStatsRecord;
-import ru.practicum.statsserver.model.dto.ViewStats;
+import ru.practicum.statsserver.model.QStatsRollup;
+import ru.practicum.statsserver.model.QStatsSketch;
+import ru.practicum.statsserver.model.StatsBucketGroup;
+import ru.practicum.statsserver.model.StatsGroup;
+import ru.practicum.statsserver.model.StatsRecord;
+import ru.practicum.statsserver.model.StatsSketch;
 
 import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
 public class StatsRepositoryCustomImpl implements StatsRepositoryCustom {
     private final EntityManager em;
+    @Value("${stats.stream.fetch-size}")
+    int fetchSize;
 
     @Override
     @Transactional(readOnly = true)
-    public List<ViewStats> findHits(BooleanBuilder findCriteria, NumberExpression<Long> hits) {
+    public List<StatsGroup> findHits(BooleanBuilder findCriteria, NumberExpression<Long> hits) {
         QStatsRecord qStats = QStatsRecord.statsRecord;
         JPAQueryFactory queryFactory = new JPAQueryFactory(em);
 
-        return queryFactory.select(Projections.constructor(ViewStats.class, qStats.app, qStats.uri, hits))
+        return queryFactory.select(Projections.constructor(StatsGroup.class, qStats.appId, qStats.uriId, hits))
                 .from(qStats)
                 .where(findCriteria)
-                .groupBy(qStats.app)
-                .groupBy(qStats.uri)
+                .groupBy(qStats.appId)
+                .groupBy(qStats.uriId)
                 .fetch();
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsGroup> findRollupHits(BooleanBuilder findCriteria) {
+        QStatsRollup qRollup = QStatsRollup.statsRollup;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return queryFactory.select(Projections.constructor(StatsGroup.class,
+                        qRollup.appId, qRollup.uriId, qRollup.hits.sum()))
+                .from(qRollup)
+                .where(findCriteria)
+                .groupBy(qRollup.appId)
+                .groupBy(qRollup.uriId)
+                .fetch();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsSketch> findSketches(BooleanBuilder findCriteria) {
+        QStatsSketch qSketch = QStatsSketch.statsSketch;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return queryFactory.selectFrom(qSketch)
+                .where(findCriteria)
+                .fetch();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsRecord> findDistinctIps(BooleanBuilder findCriteria) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return queryFactory.select(Projections.bean(StatsRecord.class, qStats.appId, qStats.uriId, qStats.ip))
+                .distinct()
+                .from(qStats)
+                .where(findCriteria)
+                .fetch();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsBucketGroup> findHitsByBucket(BooleanBuilder findCriteria,
+                                                   DateTimeExpression<LocalDateTime> bucket,
+                                                   NumberExpression<Long> hits) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return queryFactory.select(Projections.constructor(StatsBucketGroup.class,
+                        qStats.appId, qStats.uriId, bucket, hits))
+                .from(qStats)
+                .where(findCriteria)
+                .groupBy(qStats.appId, qStats.uriId, bucket)
+                .fetch();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsBucketGroup> findRollupHitsByBucket(BooleanBuilder findCriteria,
+                                                         DateTimeExpression<LocalDateTime> bucket) {
+        QStatsRollup qRollup = QStatsRollup.statsRollup;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return queryFactory.select(Projections.constructor(StatsBucketGroup.class,
+                        qRollup.appId, qRollup.uriId, bucket, qRollup.hits.sum()))
+                .from(qRollup)
+                .where(findCriteria)
+                .groupBy(qRollup.appId, qRollup.uriId, bucket)
+                .fetch();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatsGroup> findTopHits(BooleanBuilder findCriteria, NumberExpression<Long> hits, int limit) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return queryFactory.select(Projections.constructor(StatsGroup.class, qStats.appId, qStats.uriId, hits))
+                .from(qStats)
+                .where(findCriteria)
+                .groupBy(qStats.appId)
+                .groupBy(qStats.uriId)
+                .orderBy(hits.desc(), qStats.appId.asc(), qStats.uriId.asc())
+                .limit(limit)
+                .fetch();
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    public Stream<StatsGroup> streamHits(BooleanBuilder findCriteria, NumberExpression<Long> hits) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return stream(queryFactory.select(Projections.constructor(StatsGroup.class, qStats.appId, qStats.uriId, hits))
+                .from(qStats)
+                .where(findCriteria)
+                .groupBy(qStats.appId)
+                .groupBy(qStats.uriId)
+                .orderBy(qStats.appId.asc(), qStats.uriId.asc()));
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    public Stream<StatsGroup> streamRollupHits(BooleanBuilder findCriteria) {
+        QStatsRollup qRollup = QStatsRollup.statsRollup;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return stream(queryFactory.select(Projections.constructor(StatsGroup.class,
+                        qRollup.appId, qRollup.uriId, qRollup.hits.sum()))
+                .from(qRollup)
+                .where(findCriteria)
+                .groupBy(qRollup.appId)
+                .groupBy(qRollup.uriId)
+                .orderBy(qRollup.appId.asc(), qRollup.uriId.asc()));
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    public Stream<StatsGroup> streamRollupHitsByHits(BooleanBuilder findCriteria) {
+        QStatsRollup qRollup = QStatsRollup.statsRollup;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return stream(queryFactory.select(Projections.constructor(StatsGroup.class,
+                        qRollup.appId, qRollup.uriId, qRollup.hits.sum()))
+                .from(qRollup)
+                .where(findCriteria)
+                .groupBy(qRollup.appId)
+                .groupBy(qRollup.uriId)
+                .orderBy(qRollup.hits.sum().desc(), qRollup.appId.asc(), qRollup.uriId.asc()));
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    public Stream<StatsSketch> streamSketches(BooleanBuilder findCriteria) {
+        QStatsSketch qSketch = QStatsSketch.statsSketch;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return stream(queryFactory.select(Projections.bean(StatsSketch.class,
+                        qSketch.appId, qSketch.uriId, qSketch.sketch))
+                .from(qSketch)
+                .where(findCriteria)
+                .orderBy(qSketch.appId.asc(), qSketch.uriId.asc()));
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    public Stream<StatsRecord> streamDistinctIps(BooleanBuilder findCriteria) {
+        QStatsRecord qStats = QStatsRecord.statsRecord;
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        return stream(queryFactory.select(Projections.bean(StatsRecord.class, qStats.appId, qStats.uriId, qStats.ip))
+                .distinct()
+                .from(qStats)
+                .where(findCriteria)
+                .orderBy(qStats.appId.asc(), qStats.uriId.asc()));
+    }
+
+    /**
+     * Чтение вперёд без кэша сессии: проекции не попадают в контекст персистентности,
+     * а PostgreSQL при заданном fetch size внутри транзакции отдаёт строки серверным курсором.
+     */
+    private <T> Stream<T> stream(JPAQuery<T> query) {
+        return query.setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .stream();
+    }
 }
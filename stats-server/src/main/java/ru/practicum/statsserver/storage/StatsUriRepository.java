@@ -0,0 +1,24 @@
+package ru.practicum.statsserver.storage;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.statsserver.model.StatsUri;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface StatsUriRepository extends JpaRepository<StatsUri, Long> {
+
+    Optional<StatsUri> findByUri(String uri);
+
+    List<StatsUri> findByUriIn(Collection<String> uris);
+
+    /**
+     * URI по ключам без добавления в контекст персистентности:
+     * при потоковой выдаче статистики сессия живёт весь ответ и иначе накапливала бы все URI.
+     */
+    @Query("SELECT new ru.practicum.statsserver.model.StatsUri(u.id, u.uri) FROM StatsUri u WHERE u.id IN :ids")
+    List<StatsUri> findDetachedByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,145 @@
+package ru.practicum.statsserver.util;
+
+import java.util.Arrays;
+
+/**
+ * Скетч HyperLogLog для приближённого подсчёта уникальных значений.
+ * Скетчи объединяются без потерь (поэлементный максимум регистров), поэтому их можно хранить
+ * по временным корзинам и складывать при запросе. Скетчи разной точности приводятся к меньшей.
+ * Сериализованный вид: первый байт - точность p, далее 2^p регистров по байту.
+ */
+public class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+            throw new IllegalArgumentException(String.format("HyperLogLog precision must be in [%s, %s], got %s",
+                    MIN_PRECISION, MAX_PRECISION, precision));
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        int precision = bytes[0];
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION || bytes.length != (1 << precision) + 1)
+            throw new IllegalArgumentException("Malformed HyperLogLog sketch.");
+        return new HyperLogLog(precision, Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(byte[] value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision) + 1, 64 - precision + 1);
+        if (rank > registers[index])
+            registers[index] = (byte) rank;
+    }
+
+    /**
+     * Объединение со вторым скетчем.
+     *
+     * @return Результат объединения. Это этот же объект, если точность второго скетча не меньше,
+     * иначе новый скетч с точностью второго.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        HyperLogLog target = other.precision < precision ? fold(other.precision) : this;
+        HyperLogLog source = other.precision > precision ? other.fold(precision) : other;
+        for (int i = 0; i < target.registers.length; i++) {
+            if (source.registers[i] > target.registers[i])
+                target.registers[i] = source.registers[i];
+        }
+        return target;
+    }
+
+    /**
+     * Приведение к меньшей точности. Отбрасываемые младшие биты индекса регистра
+     * становятся старшими битами остатка хэша, по ним пересчитывается ранг.
+     */
+    public HyperLogLog fold(int newPrecision) {
+        if (newPrecision == precision)
+            return new HyperLogLog(precision, registers.clone());
+        if (newPrecision > precision || newPrecision < MIN_PRECISION)
+            throw new IllegalArgumentException(String.format("Cannot fold precision %s to %s",
+                    precision, newPrecision));
+        int dropped = precision - newPrecision;
+        byte[] folded = new byte[1 << newPrecision];
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] == 0)
+                continue;
+            int low = i & ((1 << dropped) - 1);
+            int rank = low != 0 ? Integer.numberOfLeadingZeros(low) - (32 - dropped) + 1 : dropped + registers[i];
+            int index = i >>> dropped;
+            if (rank > folded[index])
+                folded[index] = (byte) rank;
+        }
+        return new HyperLogLog(newPrecision, folded);
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0)
+                zeros++;
+        }
+        double estimate = alpha(m) * m * m / sum;
+        // Поправка для малых мощностей - линейный подсчёт по пустым регистрам.
+        if (estimate <= 2.5 * m && zeros > 0)
+            estimate = m * Math.log((double) m / zeros);
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    /**
+     * 64-битный хэш: FNV-1a с финальным перемешиванием из MurmurHash3.
+     */
+    static long hash(byte[] value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
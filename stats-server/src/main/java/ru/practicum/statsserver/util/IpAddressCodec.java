@@ -0,0 +1,65 @@
+package ru.practicum.statsserver.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Двоичное представление IP-адресов: 4 байта для IPv4, 16 байт для IPv6.
+ * Разбираются только литералы адресов, имена хостов не резолвятся.
+ */
+public class IpAddressCodec {
+
+    /**
+     * Значение колонки ip. Строка, не являющаяся IP-адресом, хранится байтами UTF-8:
+     * API принимает такие хиты, и они учитываются при подсчёте уникальных как отдельный "адрес".
+     */
+    public static byte[] toBytes(String ip) {
+        byte[] address = encode(ip);
+        return address != null ? address : ip.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Адрес в сетевом порядке байт или null, если строка не является IP-адресом.
+     */
+    public static byte[] encode(String ip) {
+        if (ip == null)
+            return null;
+        String value = ip.trim();
+        if (value.indexOf(':') >= 0) {
+            // Строку только из шестнадцатеричных цифр, ':' и '.' InetAddress разбирает как литерал, без DNS.
+            if (!value.chars().allMatch(c -> c == ':' || c == '.' || (c >= '0' && c <= '9')
+                    || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')))
+                return null;
+            try {
+                return InetAddress.getByName(value).getAddress();
+            } catch (UnknownHostException | SecurityException e) {
+                return null;
+            }
+        }
+        return encodeV4(value);
+    }
+
+    private static byte[] encodeV4(String ip) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4)
+            return null;
+        byte[] result = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3)
+                return null;
+            int octet = 0;
+            for (int j = 0; j < part.length(); j++) {
+                char c = part.charAt(j);
+                if (c < '0' || c > '9')
+                    return null;
+                octet = octet * 10 + (c - '0');
+            }
+            if (octet > 255)
+                return null;
+            result[i] = (byte) octet;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.statsserver.util;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.LocalDateTimeType;
+
+/**
+ * HQL-функции начала временной корзины для рядов статистики: trunc_minute, trunc_hour и trunc_day.
+ * Единица округления зашита в шаблон, а не передаётся параметром: PostgreSQL считает выражения
+ * с разными параметрами в SELECT и GROUP BY разными. date_trunc есть и в PostgreSQL, и в H2.
+ */
+public class StatsFunctionsContributor implements MetadataBuilderContributor {
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applySqlFunction("trunc_minute", new SQLFunctionTemplate(LocalDateTimeType.INSTANCE,
+                "date_trunc('minute', ?1)"));
+        metadataBuilder.applySqlFunction("trunc_hour", new SQLFunctionTemplate(LocalDateTimeType.INSTANCE,
+                "date_trunc('hour', ?1)"));
+        metadataBuilder.applySqlFunction("trunc_day", new SQLFunctionTemplate(LocalDateTimeType.INSTANCE,
+                "date_trunc('day', ?1)"));
+    }
+}
@@ -0,0 +1,107 @@
+-- Выполняется только на PostgreSQL (spring.sql.init.platform=postgresql), раньше schema.sql.
+-- Таблица хитов секционируется по времени, секции создаёт и удаляет PartitionMaintenanceService.
+-- Уже существующая несекционированная таблица не трогается, её обслуживает удаление по сроку хранения.
+
+-- Перевод таблиц со строковыми app, uri и ip на словарные ключи.
+-- IP переводятся в двоичный вид одним проходом по таблице (ALTER COLUMN ... TYPE ... USING),
+-- скетчи уникальных IP пересоздаются по хитам (HitBatchRepository.backfillSketches).
+-- Блок выполняется один раз: после перевода колонки app в таблице нет.
+
+-- Двоичный IP по правилам IpAddressCodec: 4 байта для IPv4 (и IPv4 внутри IPv6), 16 байт для IPv6,
+-- строки, не являющиеся адресом, - байтами UTF-8, чтобы не потерять их при подсчёте уникальных.
+-- Временная функция, живёт только в соединении инициализации схемы.
+CREATE OR REPLACE FUNCTION pg_temp.stats_ip_bytes(value TEXT) RETURNS BYTEA
+    LANGUAGE plpgsql IMMUTABLE AS
+'
+DECLARE
+    address BYTEA;
+BEGIN
+    -- Маска и сокращённая запись IPv4 допустимы в inet, но не в IpAddressCodec.
+    IF position(''/'' IN value) > 0
+        OR (position('':'' IN value) = 0 AND trim(value) !~ ''^[0-9]{1,3}([.][0-9]{1,3}){3}$'') THEN
+        RETURN convert_to(value, ''UTF8'');
+    END IF;
+    -- inet_send: семейство, длина маски, признак cidr, число байт адреса, затем сам адрес.
+    address := substring(inet_send(trim(value)::inet) FROM 5);
+    IF length(address) = 16 AND substring(address FROM 1 FOR 12) = decode(''00000000000000000000ffff'', ''hex'') THEN
+        RETURN substring(address FROM 13);
+    END IF;
+    RETURN address;
+EXCEPTION
+    WHEN invalid_text_representation THEN
+        RETURN convert_to(value, ''UTF8'');
+END
+';
+
+DO
+'
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = ''statistics'' AND column_name = ''app'') THEN
+        CREATE TABLE IF NOT EXISTS stats_apps
+        (
+            app_id INT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+            name   VARCHAR(100)                         NOT NULL,
+            CONSTRAINT pk_stats_apps PRIMARY KEY (app_id),
+            CONSTRAINT uq_stats_apps_name UNIQUE (name)
+        );
+        CREATE TABLE IF NOT EXISTS stats_uris
+        (
+            uri_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+            uri    VARCHAR(1000)                           NOT NULL,
+            CONSTRAINT pk_stats_uris PRIMARY KEY (uri_id),
+            CONSTRAINT uq_stats_uris_uri UNIQUE (uri)
+        );
+        INSERT INTO stats_apps (name) SELECT DISTINCT app FROM statistics ON CONFLICT DO NOTHING;
+        INSERT INTO stats_uris (uri) SELECT DISTINCT uri FROM statistics ON CONFLICT DO NOTHING;
+
+        ALTER TABLE statistics ADD COLUMN app_id INT, ADD COLUMN uri_id BIGINT;
+        UPDATE statistics s SET app_id = a.app_id, uri_id = u.uri_id
+        FROM stats_apps a, stats_uris u
+        WHERE a.name = s.app AND u.uri = s.uri;
+        ALTER TABLE statistics DROP COLUMN app, DROP COLUMN uri,
+            ALTER COLUMN app_id SET NOT NULL, ALTER COLUMN uri_id SET NOT NULL;
+        ALTER TABLE statistics ALTER COLUMN ip TYPE BYTEA USING pg_temp.stats_ip_bytes(ip);
+
+        IF EXISTS (SELECT 1 FROM information_schema.tables
+                   WHERE table_schema = current_schema() AND table_name = ''statistics_rollup'') THEN
+            INSERT INTO stats_apps (name) SELECT DISTINCT app FROM statistics_rollup ON CONFLICT DO NOTHING;
+            INSERT INTO stats_uris (uri) SELECT DISTINCT uri FROM statistics_rollup ON CONFLICT DO NOTHING;
+            ALTER TABLE statistics_rollup ADD COLUMN app_id INT, ADD COLUMN uri_id BIGINT;
+            UPDATE statistics_rollup r SET app_id = a.app_id, uri_id = u.uri_id
+            FROM stats_apps a, stats_uris u
+            WHERE a.name = r.app AND u.uri = r.uri;
+            ALTER TABLE statistics_rollup DROP CONSTRAINT pk_statistics_rollup, DROP COLUMN app, DROP COLUMN uri,
+                ALTER COLUMN app_id SET NOT NULL, ALTER COLUMN uri_id SET NOT NULL,
+                ADD CONSTRAINT pk_statistics_rollup PRIMARY KEY (granularity, bucket, app_id, uri_id);
+        END IF;
+        DROP TABLE IF EXISTS statistics_hll;
+        DROP TABLE IF EXISTS stats_backfill;
+    END IF;
+END
+';
+
+CREATE SEQUENCE IF NOT EXISTS statistics_id_seq;
+
+CREATE TABLE IF NOT EXISTS statistics
+(
+    id        BIGINT DEFAULT nextval('statistics_id_seq') NOT NULL,
+    app_id    INT                                         NOT NULL,
+    uri_id    BIGINT                                      NOT NULL,
+    ip        BYTEA                                       NOT NULL,
+    timestamp TIMESTAMP WITHOUT TIME ZONE                 NOT NULL,
+    CONSTRAINT pk_statistics PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+DO
+'
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = ''statistics''::regclass) THEN
+        CREATE TABLE IF NOT EXISTS statistics_default PARTITION OF statistics DEFAULT;
+    END IF;
+END
+';
+
+-- Покрывающий индекс: app_id для группировки и ip для подсчёта уникальных читаются без обращения к таблице.
+-- На секционированной таблице индекс создаётся и во всех секциях.
+CREATE INDEX IF NOT EXISTS idx_statistics_uri_timestamp ON statistics (uri_id, timestamp) INCLUDE (app_id, ip);
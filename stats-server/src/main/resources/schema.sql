@@ -1,9 +1,78 @@
+-- На PostgreSQL таблица statistics создаётся секционированной в schema-postgresql.sql.
+-- Строки сервисов и URI хранятся один раз в словарях, хиты и агрегаты ссылаются на них по ключам.
+-- Внешних ключей нет, чтобы не замедлять запись хитов: ключи выдаёт только StatsDictionary.
+CREATE TABLE IF NOT EXISTS stats_apps
+(
+    app_id INT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name   VARCHAR(100)                         NOT NULL,
+    CONSTRAINT pk_stats_apps PRIMARY KEY (app_id),
+    CONSTRAINT uq_stats_apps_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS stats_uris
+(
+    uri_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    uri    VARCHAR(1000)                           NOT NULL,
+    CONSTRAINT pk_stats_uris PRIMARY KEY (uri_id),
+    CONSTRAINT uq_stats_uris_uri UNIQUE (uri)
+);
+
+-- ip - 4 байта для IPv4, 16 байт для IPv6.
 CREATE TABLE IF NOT EXISTS statistics
 (
     id        BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-    app       VARCHAR(100)                            NOT NULL,
-    uri       VARCHAR(1000)                           NOT NULL,
-    ip        VARCHAR(40)                             NOT NULL,
+    app_id    INT                                     NOT NULL,
+    uri_id    BIGINT                                  NOT NULL,
+    ip        BYTEA                                   NOT NULL,
     timestamp TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
     CONSTRAINT pk_statistics PRIMARY KEY (id)
-);
\ No newline at end of file
+);
+
+-- Сырые хиты читаются по URI за период (края диапазона, unique, временные ряды) и по периоду для всех URI.
+-- На PostgreSQL индекс по URI создаётся в schema-postgresql.sql покрывающим, здесь он уже есть.
+CREATE INDEX IF NOT EXISTS idx_statistics_uri_timestamp ON statistics (uri_id, timestamp);
+CREATE INDEX IF NOT EXISTS idx_statistics_timestamp ON statistics (timestamp);
+
+CREATE TABLE IF NOT EXISTS statistics_rollup
+(
+    granularity VARCHAR(5)                  NOT NULL,
+    bucket      TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id      INT                         NOT NULL,
+    uri_id      BIGINT                      NOT NULL,
+    hits        BIGINT                      NOT NULL,
+    CONSTRAINT pk_statistics_rollup PRIMARY KEY (granularity, bucket, app_id, uri_id)
+);
+
+-- Агрегаты по списку URI (просмотры событий) и потоковая выдача в порядке (app_id, uri_id).
+CREATE INDEX IF NOT EXISTS idx_statistics_rollup_uri ON statistics_rollup (app_id, uri_id, granularity, bucket);
+
+-- Первичное заполнение агрегатов по уже накопленным хитам. Выполняется только пока агрегатов нет.
+INSERT INTO statistics_rollup (granularity, bucket, app_id, uri_id, hits)
+SELECT 'HOUR', DATE_TRUNC('hour', timestamp), app_id, uri_id, COUNT(*)
+FROM statistics
+WHERE NOT EXISTS (SELECT 1 FROM statistics_rollup WHERE granularity = 'HOUR')
+GROUP BY DATE_TRUNC('hour', timestamp), app_id, uri_id;
+
+INSERT INTO statistics_rollup (granularity, bucket, app_id, uri_id, hits)
+SELECT 'DAY', DATE_TRUNC('day', timestamp), app_id, uri_id, COUNT(*)
+FROM statistics
+WHERE NOT EXISTS (SELECT 1 FROM statistics_rollup WHERE granularity = 'DAY')
+GROUP BY DATE_TRUNC('day', timestamp), app_id, uri_id;
+
+CREATE TABLE IF NOT EXISTS statistics_hll
+(
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id INT                         NOT NULL,
+    uri_id BIGINT                      NOT NULL,
+    sketch BYTEA                       NOT NULL,
+    CONSTRAINT pk_statistics_hll PRIMARY KEY (bucket, app_id, uri_id)
+);
+
+-- Разовые построения по уже накопленным хитам (HitBatchRepository.backfillSketches).
+-- next_bucket - откуда продолжить прерванное построение, NULL - построение завершено.
+CREATE TABLE IF NOT EXISTS stats_backfill
+(
+    name        VARCHAR(50) NOT NULL,
+    next_bucket TIMESTAMP WITHOUT TIME ZONE,
+    CONSTRAINT pk_stats_backfill PRIMARY KEY (name)
+);
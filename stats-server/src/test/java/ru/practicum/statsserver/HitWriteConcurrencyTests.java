@@ -0,0 +1,111 @@
+package ru.practicum.statsserver;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.statsserver.model.StatsRecord;
+import ru.practicum.statsserver.service.StatsDictionary;
+import ru.practicum.statsserver.storage.HitBatchRepository;
+import ru.practicum.statsserver.util.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Одновременная запись пачек с общими ключами агрегатов и скетчей: ни одно приращение не теряется,
+ * как при записи из нескольких экземпляров сервера.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HitWriteConcurrencyTests {
+    private static final String APP = "writers";
+    private static final int THREADS = 8;
+    private static final int BATCHES = 10;
+    private static final int BATCH_SIZE = 50;
+    private static final LocalDateTime BASE = LocalDateTime.of(2022, 10, 1, 12, 0);
+
+    @Autowired
+    private HitBatchRepository hitBatchRepository;
+    @Autowired
+    private StatsDictionary statsDictionary;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Value("${stats.hll.precision}")
+    private int hllPrecision;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterAll
+    void tearDown() {
+        executor.shutdownNow();
+        Integer appId = statsDictionary.findAppId(APP);
+        jdbcTemplate.update("DELETE FROM statistics_hll WHERE app_id = ?", appId);
+        jdbcTemplate.update("DELETE FROM statistics_rollup WHERE app_id = ?", appId);
+        jdbcTemplate.update("DELETE FROM statistics WHERE app_id = ?", appId);
+    }
+
+    @Test
+    void concurrentBatchesKeepEveryIncrement() throws Exception {
+        int appId = statsDictionary.appId(APP);
+        List<Long> uriIds = List.of(statsDictionary.uriId("/writers/1"), statsDictionary.uriId("/writers/2"));
+        List<HyperLogLog> expected = List.of(new HyperLogLog(hllPrecision), new HyperLogLog(hllPrecision));
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int b = 0; b < BATCHES; b++) {
+                    List<StatsRecord> records = new ArrayList<>();
+                    for (int i = 0; i < BATCH_SIZE; i++) {
+                        // У каждого потока свои IP: уникальных столько же, сколько хитов на URI.
+                        int n = (thread * BATCHES + b) * BATCH_SIZE + i;
+                        records.add(StatsRecord.builder()
+                                .appId(appId)
+                                .uriId(uriIds.get(i % 2))
+                                .ip(ip(n))
+                                .timestamp(BASE.plusMinutes(i % 30))
+                                .build());
+                    }
+                    hitBatchRepository.saveAll(records);
+                }
+                return null;
+            }));
+        }
+        for (int n = 0; n < THREADS * BATCHES * BATCH_SIZE; n++)
+            expected.get(n % BATCH_SIZE % 2).add(ip(n));
+        start.countDown();
+        for (Future<?> result : results)
+            result.get(1, TimeUnit.MINUTES);
+
+        long perUri = (long) THREADS * BATCHES * BATCH_SIZE / 2;
+        for (Long uriId : uriIds) {
+            for (String granularity : List.of("HOUR", "DAY")) {
+                assertEquals(perUri, jdbcTemplate.queryForObject("SELECT hits FROM statistics_rollup " +
+                                "WHERE granularity = ? AND app_id = ? AND uri_id = ?", Long.class,
+                        granularity, appId, uriId));
+            }
+            // Объединение скетчей детерминировано: без потерь скетч совпадает с построенным по всем IP сразу.
+            assertArrayEquals(expected.get(uriIds.indexOf(uriId)).toBytes(), jdbcTemplate.queryForObject(
+                    "SELECT sketch FROM statistics_hll WHERE app_id = ? AND uri_id = ?", byte[].class,
+                    appId, uriId));
+        }
+    }
+
+    private static byte[] ip(int n) {
+        return new byte[]{10, (byte) (n >> 16), (byte) (n >> 8), (byte) n};
+    }
+}
@@ -0,0 +1,123 @@
+package ru.practicum.statsserver;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.statsserver.service.StatsService;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static ru.practicum.statsserver.util.Constants.DATE_PATTERN;
+
+/**
+ * Планы запросов, которые StatsService.findAll отправляет в БД: хиты, агрегаты и скетчи не должны
+ * читаться полным просмотром. SQL перехватывается SqlCapture и объясняется с теми же параметрами.
+ * На PostgreSQL полный просмотр запрещается (enable_seqscan), и он остаётся в плане только без подходящего индекса.
+ */
+@SpringBootTest
+@Import(SqlCapture.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTests {
+    private static final String APP = "plans";
+    private static final int URIS = 100;
+    private static final int HITS = 10000;
+    private static final LocalDateTime BASE = LocalDateTime.of(2022, 9, 1, 0, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private SqlCapture sqlCapture;
+
+    private int appId;
+    private List<String> uris;
+
+    @BeforeAll
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO stats_apps (name) VALUES (?)", APP);
+        appId = jdbcTemplate.queryForObject("SELECT app_id FROM stats_apps WHERE name = ?", Integer.class, APP);
+        List<Object[]> uriRows = new ArrayList<>();
+        for (int i = 0; i < URIS; i++)
+            uriRows.add(new Object[]{"/plans/" + i});
+        jdbcTemplate.batchUpdate("INSERT INTO stats_uris (uri) VALUES (?)", uriRows);
+        List<Long> ids = jdbcTemplate.queryForList("SELECT uri_id FROM stats_uris WHERE uri LIKE '/plans/%' " +
+                "ORDER BY uri_id", Long.class);
+        List<Object[]> hits = new ArrayList<>();
+        for (int i = 0; i < HITS; i++) {
+            hits.add(new Object[]{appId, ids.get(i % URIS), new byte[]{10, 0, (byte) (i / 256), (byte) i},
+                    Timestamp.valueOf(BASE.plusMinutes(i * 7L))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO statistics (app_id, uri_id, ip, timestamp) VALUES (?, ?, ?, ?)", hits);
+        jdbcTemplate.update("INSERT INTO statistics_rollup (granularity, bucket, app_id, uri_id, hits) " +
+                "SELECT 'HOUR', DATE_TRUNC('hour', timestamp), app_id, uri_id, COUNT(*) FROM statistics " +
+                "WHERE app_id = ? GROUP BY DATE_TRUNC('hour', timestamp), app_id, uri_id", appId);
+        jdbcTemplate.update("INSERT INTO statistics_rollup (granularity, bucket, app_id, uri_id, hits) " +
+                "SELECT 'DAY', DATE_TRUNC('day', timestamp), app_id, uri_id, COUNT(*) FROM statistics " +
+                "WHERE app_id = ? GROUP BY DATE_TRUNC('day', timestamp), app_id, uri_id", appId);
+        jdbcTemplate.execute("ANALYZE");
+        uris = List.of("/plans/1", "/plans/2");
+    }
+
+    @AfterAll
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM statistics_hll WHERE app_id = ?", appId);
+        jdbcTemplate.update("DELETE FROM statistics_rollup WHERE app_id = ?", appId);
+        jdbcTemplate.update("DELETE FROM statistics WHERE app_id = ?", appId);
+        jdbcTemplate.update("DELETE FROM stats_uris WHERE uri LIKE '/plans/%'");
+        jdbcTemplate.update("DELETE FROM stats_apps WHERE app_id = ?", appId);
+    }
+
+    @Test
+    void uniqueHitsByUriAndRangeUseIndex() {
+        assertNoFullScan(() -> statsService.findAll(at(1), at(20), APP, uris, true, false));
+    }
+
+    @Test
+    void uniqueHitsByRangeUseIndex() {
+        assertNoFullScan(() -> statsService.findAll(at(1), at(2), null, null, true, false));
+    }
+
+    @Test
+    void hitsFromRollupsUseIndex() {
+        // Границы не по часам: в запросе и агрегаты, и сырые хиты на краях диапазона.
+        assertNoFullScan(() -> statsService.findAll(at(24).replace(":00:00", ":30:00"),
+                at(72).replace(":00:00", ":30:00"), APP, uris, false, false));
+    }
+
+    @Test
+    void uniqueHitsFromSketchesUseIndex() {
+        assertNoFullScan(() -> statsService.findAll(at(24), at(48), APP, null, true, true));
+    }
+
+    private String at(int hours) {
+        return BASE.plusHours(hours).format(DateTimeFormatter.ofPattern(DATE_PATTERN));
+    }
+
+    /**
+     * Ни один SELECT, выполненный action, не читает таблицу полным просмотром.
+     */
+    private void assertNoFullScan(Runnable action) {
+        List<SqlCapture.Query> queries = sqlCapture.record(action).stream()
+                .filter(q -> q.sql.trim().toLowerCase().startsWith("select"))
+                .collect(Collectors.toList());
+        assertFalse(queries.isEmpty(), "No queries captured");
+        for (SqlCapture.Query query : queries) {
+            String plan = jdbcTemplate.execute((ConnectionCallback<String>) c -> SqlCapture.plan(c, query));
+            assertFalse(plan.contains("tableScan") || plan.contains("Seq Scan"),
+                    () -> "Full scan in plan of " + query + ":\n" + plan);
+        }
+    }
+}
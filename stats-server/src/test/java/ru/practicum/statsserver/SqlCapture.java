@@ -0,0 +1,149 @@
+package ru.practicum.statsserver;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Перехват SQL, который приложение отправляет в БД: DataSource оборачивается прокси, запоминающим
+ * текст подготовленных запросов вместе с параметрами. Запоминаются только запросы потока,
+ * выполняющего record, - фоновые задачи в результат не попадают.
+ * План строится для того же текста с теми же параметрами.
+ */
+@TestConfiguration
+class SqlCapture implements BeanPostProcessor {
+    private static final Set<String> EXECUTE = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate");
+    private final ThreadLocal<List<Query>> recorded = new ThreadLocal<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource))
+            return bean;
+        return proxy(DataSource.class, bean, (method, args, result) -> method.getName().equals("getConnection")
+                ? proxy(Connection.class, result, this::onConnection)
+                : result);
+    }
+
+    /**
+     * Запросы, выполненные action в текущем потоке.
+     */
+    List<Query> record(Runnable action) {
+        recorded.set(new ArrayList<>());
+        try {
+            action.run();
+            return recorded.get();
+        } finally {
+            recorded.remove();
+        }
+    }
+
+    /**
+     * План запроса одной строкой. На PostgreSQL - с запретом полного просмотра в том же соединении.
+     */
+    static String plan(Connection c, Query query) throws SQLException {
+        boolean postgres = "PostgreSQL".equals(c.getMetaData().getDatabaseProductName());
+        try (Statement statement = c.createStatement();
+             PreparedStatement explain = c.prepareStatement("EXPLAIN " + query.sql)) {
+            if (postgres)
+                statement.execute("SET enable_seqscan = off");
+            for (Parameter parameter : query.parameters)
+                parameter.apply(explain);
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = explain.executeQuery()) {
+                while (rs.next())
+                    plan.append(rs.getString(1)).append('\n');
+            }
+            if (postgres)
+                statement.execute("RESET enable_seqscan");
+            return plan.toString();
+        }
+    }
+
+    private Object onConnection(Method method, Object[] args, Object result) {
+        if (!method.getName().equals("prepareStatement"))
+            return result;
+        String sql = (String) args[0];
+        Map<Integer, Parameter> parameters = new TreeMap<>();
+        return proxy(PreparedStatement.class, result, (m, a, r) -> {
+            String name = m.getName();
+            if (name.startsWith("set") && a != null && a.length >= 2 && a[0] instanceof Integer)
+                parameters.put((Integer) a[0], new Parameter(m, a));
+            else if (name.equals("clearParameters"))
+                parameters.clear();
+            else if ((EXECUTE.contains(name) || name.equals("addBatch")) && (a == null || a.length == 0)
+                    && recorded.get() != null)
+                recorded.get().add(new Query(sql, List.copyOf(parameters.values())));
+            return r;
+        });
+    }
+
+    private interface Interceptor {
+        Object after(Method method, Object[] args, Object result) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, Interceptor interceptor) {
+        InvocationHandler handler = (p, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            return interceptor.after(method, args, result);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    static class Query {
+        final String sql;
+        final List<Parameter> parameters;
+
+        Query(String sql, List<Parameter> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
+
+    /**
+     * Вызов setXxx(index, value, ...) для повтора на запросе EXPLAIN.
+     */
+    static class Parameter {
+        private final Method setter;
+        private final Object[] args;
+
+        Parameter(Method setter, Object[] args) {
+            this.setter = setter;
+            this.args = args.clone();
+        }
+
+        void apply(PreparedStatement statement) throws SQLException {
+            try {
+                setter.invoke(statement, args);
+            } catch (ReflectiveOperationException e) {
+                throw new SQLException(e);
+            }
+        }
+    }
+}